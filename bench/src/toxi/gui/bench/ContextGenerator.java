@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Generates and compiles synthetic context classes for the benchmarks, since
+ * classes with thousands of annotated fields aren't practical to maintain by
+ * hand. Requires a JDK (uses the system Java compiler).
+ */
+public class ContextGenerator {
+
+    private static final String PACKAGE = "toxi.gui.bench.generated";
+
+    private final File dir;
+    private final List<String> sources = new ArrayList<String>();
+    private URLClassLoader loader;
+
+    /**
+     * Creates a generator using a new temporary directory.
+     * 
+     * @throws IOException
+     */
+    public ContextGenerator() throws IOException {
+        dir = File.createTempFile("cp5magic-bench", "");
+        dir.delete();
+        if (!new File(dir, PACKAGE.replace('.', '/')).mkdirs()) {
+            throw new IOException("can't create: " + dir);
+        }
+    }
+
+    /**
+     * Creates a generator for classes already compiled into the given
+     * directory by another instance (see {@link #getDirectory()}).
+     * 
+     * @param dir
+     */
+    public ContextGenerator(File dir) {
+        this.dir = dir;
+    }
+
+    private void appendFields(StringBuilder src, int numFields) {
+        for (int i = 0; i < numFields; i++) {
+            switch (i % 3) {
+                case 0:
+                    src.append("@toxi.gui.GUIElement @toxi.gui.Range(min=0,"
+                            + "max=1) public float f");
+                    break;
+                case 1:
+                    src.append("@toxi.gui.GUIElement @toxi.gui.Range(min=0,"
+                            + "max=100) public int i");
+                    break;
+                default:
+                    src.append("@toxi.gui.GUIElement public boolean b");
+            }
+            src.append(i).append(";\n");
+        }
+    }
+
+    /**
+     * Compiles all sources generated so far (if any) and makes them loadable
+     * via {@link #load(String)}.
+     * 
+     * @throws IOException
+     */
+    public void compile() throws IOException {
+        if (sources.size() > 0) {
+            JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+            if (javac == null) {
+                throw new IOException("no system Java compiler, run on a JDK");
+            }
+            List<String> args = new ArrayList<String>();
+            args.add("-nowarn");
+            args.add("-cp");
+            args.add(System.getProperty("java.class.path"));
+            args.add("-d");
+            args.add(dir.getPath());
+            args.addAll(sources);
+            if (javac.run(null, null, null, args.toArray(new String[args
+                    .size()])) != 0) {
+                throw new IOException("compilation failed");
+            }
+            sources.clear();
+        }
+        loader =
+                new URLClassLoader(new URL[] { dir.toURI().toURL() },
+                        ContextGenerator.class.getClassLoader());
+    }
+
+    /**
+     * Generates a context class with the given number of annotated fields,
+     * cycling through float, int and boolean types.
+     * 
+     * @param name
+     *            class name
+     * @param numFields
+     * @throws IOException
+     */
+    public void generateFlat(String name, int numFields) throws IOException {
+        StringBuilder src = new StringBuilder();
+        src.append("public class ").append(name).append(" {\n");
+        appendFields(src, numFields);
+        src.append("}\n");
+        write(name, src);
+    }
+
+    /**
+     * Generates a chain of classes <code>name0 .. name(depth-1)</code>, each
+     * extending the previous one and implementing its own interface
+     * <code>nameI0 ..</code>.
+     * 
+     * @param name
+     * @param depth
+     * @throws IOException
+     */
+    public void generateHierarchy(String name, int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            StringBuilder src = new StringBuilder();
+            src.append("public interface ").append(name).append("I").append(i);
+            if (i > 0) {
+                src.append(" extends ").append(name).append("I").append(i - 1);
+            }
+            src.append(" {}\n");
+            write(name + "I" + i, src);
+            src = new StringBuilder();
+            src.append("public class ").append(name).append(i);
+            if (i > 0) {
+                src.append(" extends ").append(name).append(i - 1);
+            }
+            src.append(" implements ").append(name).append("I").append(i);
+            src.append(" {}\n");
+            write(name + i, src);
+        }
+    }
+
+    /**
+     * Generates a context class with roughly the given number of annotated
+     * fields, split into sub-contexts of 50 fields each plus one field
+     * selector (3 fields) per sub-context.
+     * 
+     * @param name
+     *            class name
+     * @param numFields
+     * @throws IOException
+     */
+    public void generateNested(String name, int numFields) throws IOException {
+        if (!new File(dir, PACKAGE.replace('.', '/') + "/Group.java").exists()) {
+            StringBuilder src = new StringBuilder("public class Group {\n");
+            appendFields(src, 50);
+            src.append("}\n");
+            write("Group", src);
+            src = new StringBuilder("public class Point {\n");
+            src.append("@toxi.gui.Range(min=-1,max=1) public float x, y, z;\n");
+            src.append("}\n");
+            write("Point", src);
+        }
+        StringBuilder src = new StringBuilder();
+        src.append("public class ").append(name).append(" {\n");
+        for (int i = 0, num = Math.max(numFields / 53, 1); i < num; i++) {
+            src.append("@toxi.gui.GUISubContext public Group g").append(i)
+                    .append(" = new Group();\n");
+            src.append("@toxi.gui.GUIFieldSelector(fields=\"x,y,z\") ")
+                    .append("public Point p").append(i).append(
+                            " = new Point();\n");
+        }
+        src.append("}\n");
+        write(name, src);
+    }
+
+    /**
+     * @return directory of generated sources and classes
+     */
+    public File getDirectory() {
+        return dir;
+    }
+
+    /**
+     * @param name
+     *            simple class name
+     * @return generated class
+     * @throws ClassNotFoundException
+     */
+    public Class<?> load(String name) throws ClassNotFoundException {
+        return loader.loadClass(PACKAGE + "." + name);
+    }
+
+    private void write(String name, StringBuilder body) throws IOException {
+        File f = new File(dir, PACKAGE.replace('.', '/') + "/" + name + ".java");
+        Writer out = new FileWriter(f);
+        try {
+            out.write("package " + PACKAGE + ";\n\n");
+            out.write(body.toString());
+        } finally {
+            out.close();
+        }
+        sources.add(f.getPath());
+    }
+}
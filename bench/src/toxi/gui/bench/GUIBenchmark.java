@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import toxi.gui.FloatRangeBuilder;
+import toxi.gui.GUIElement;
+import toxi.gui.GUIElementBuilder;
+import toxi.gui.GUIManager;
+import toxi.gui.GUIWidget;
+import toxi.gui.GUIWidgetListener;
+import toxi.gui.HeadlessBackend;
+import toxi.gui.Range;
+import toxi.util.datatypes.FloatRange;
+import toxi.util.datatypes.IntegerRange;
+
+/**
+ * Micro benchmarks for the hot paths of the binding layer, running on the
+ * {@link HeadlessBackend}. Each case is warmed up, then measured over a
+ * number of fixed length rounds, reporting the average time and the number
+ * of bytes allocated per operation (measured via the HotSpot thread
+ * allocation counter, "n/a" on other VMs).
+ * 
+ * Usage: <code>java toxi.gui.bench.GUIBenchmark [-quick] [-nofork]
+ * [filter]</code>, only cases whose name contains the filter string are run.
+ * By default each case runs in its own JVM.
+ */
+public class GUIBenchmark {
+
+    /**
+     * A single benchmark case.
+     */
+    public static abstract class Case {
+
+        protected final String name;
+
+        protected Case(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Executes the given number of operations.
+         * 
+         * @param numOps
+         */
+        public abstract void run(int numOps);
+
+        public void setup() throws Exception {
+        }
+    }
+
+    public static class WriteBackContext {
+
+        @GUIElement
+        @Range(min = 0, max = 1)
+        public float value;
+
+        @GUIElement
+        @Range(min = 0, max = 100)
+        public int count;
+
+        @GUIElement
+        public boolean isActive;
+
+        @GUIElement
+        public FloatRange range = new FloatRange(0, 1);
+
+        @GUIElement
+        public IntegerRange intRange = new IntegerRange(0, 100);
+    }
+
+    private static final int[] SIZES = { 10, 1000, 10000, 50000 };
+    private static final int[] QUICK_SIZES = { 10, 1000 };
+
+    private static final ThreadMXBean THREADS = ManagementFactory
+            .getThreadMXBean();
+
+    // keeps results reachable, so they can't be optimized away
+    static volatile Object sink;
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static List<Case> createCases(ContextGenerator gen, int[] sizes)
+            throws ClassNotFoundException {
+        List<Case> cases = new ArrayList<Case>();
+        for (int n : sizes) {
+            cases.add(createControllers("createControllers flat, fields=" + n,
+                    gen.load("Flat" + n)));
+        }
+        for (int n : sizes) {
+            cases.add(createControllers("createControllers nested, fields="
+                    + n, gen.load("Nested" + n)));
+        }
+        Class<?> deep = gen.load("Deep19");
+        cases.add(mapping("getMappingForType depth=20, cached", deep, gen
+                .load("DeepI0"), false));
+        cases.add(mapping("getMappingForType depth=20, uncached", deep, gen
+                .load("DeepI0"), true));
+        cases.add(mapping("getMappingForType depth=20, miss", deep, null, true));
+        cases.add(dispatch(1));
+        cases.add(dispatch(8));
+        cases.add(writeBack("write-back float slider", "value", false));
+        cases.add(writeBack("write-back int slider", "count", false));
+        cases.add(writeBack("write-back toggle", "isActive", false));
+        cases.add(writeBack("write-back FloatRange min", "range_min", false));
+        cases.add(writeBack("write-back IntegerRange max", "intRange_max",
+                false));
+        cases.add(writeBack("write-back float slider, frame synchronized",
+                "value", true));
+        return cases;
+    }
+
+    private static Case createControllers(String name, final Class<?> type) {
+        return new Case(name) {
+
+            Object context;
+
+            @Override
+            public void run(int numOps) {
+                for (int i = 0; i < numOps; i++) {
+                    GUIManager gui =
+                            new GUIManager(new HeadlessBackend(), true);
+                    gui.createControllers(context);
+                    sink = gui;
+                }
+            }
+
+            @Override
+            public void setup() throws Exception {
+                context = type.getDeclaredConstructor().newInstance();
+            }
+        };
+    }
+
+    private static Case dispatch(int numListeners) {
+        final int num = numListeners;
+        return new Case("addListenerFor dispatch, listeners=" + num) {
+
+            GUIWidget widget;
+            int count;
+
+            @Override
+            public void run(int numOps) {
+                for (int i = 0; i < numOps; i++) {
+                    widget.changeValue((i & 1023) / 1024f);
+                }
+            }
+
+            @Override
+            public void setup() {
+                WriteBackContext ctx = new WriteBackContext();
+                GUIManager gui = new GUIManager(new HeadlessBackend(), true);
+                gui.createControllers(ctx);
+                for (int i = 0; i < num; i++) {
+                    gui.addListenerFor("value", new GUIWidgetListener() {
+
+                        public void widgetChanged(GUIWidget w, float value) {
+                            count++;
+                        }
+                    });
+                }
+                widget = gui.getWidget("value");
+            }
+        };
+    }
+
+    /**
+     * Runs a single case in a new JVM, so that results don't depend on the
+     * JIT profile left behind by earlier cases.
+     * 
+     * @param index
+     *            case index
+     * @param isQuick
+     * @param dir
+     *            directory of the generated classes
+     * @throws Exception
+     */
+    private static void fork(int index, boolean isQuick, File dir)
+            throws Exception {
+        List<String> cmd = new ArrayList<String>();
+        cmd.add(new File(System.getProperty("java.home"), "bin/java")
+                .getPath());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(GUIBenchmark.class.getName());
+        if (isQuick) {
+            cmd.add("-quick");
+        }
+        cmd.add("-dir");
+        cmd.add(dir.getPath());
+        cmd.add("-case");
+        cmd.add(Integer.toString(index));
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        BufferedReader in =
+                new BufferedReader(new InputStreamReader(p.getInputStream()));
+        String line;
+        while ((line = in.readLine()) != null) {
+            System.out.println(line);
+        }
+        p.waitFor();
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean isQuick = false;
+        boolean isForking = true;
+        String filter = null;
+        File dir = null;
+        int caseIndex = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-quick")) {
+                isQuick = true;
+            } else if (args[i].equals("-nofork")) {
+                isForking = false;
+            } else if (args[i].equals("-dir")) {
+                dir = new File(args[++i]);
+            } else if (args[i].equals("-case")) {
+                caseIndex = Integer.parseInt(args[++i]);
+            } else {
+                filter = args[i];
+            }
+        }
+        Logger.getLogger("toxi.gui").setLevel(Level.WARNING);
+        int[] sizes = isQuick ? QUICK_SIZES : SIZES;
+        ContextGenerator gen;
+        if (dir != null) {
+            gen = new ContextGenerator(dir);
+        } else {
+            gen = new ContextGenerator();
+            for (int n : sizes) {
+                gen.generateFlat("Flat" + n, n);
+                gen.generateNested("Nested" + n, n);
+            }
+            gen.generateHierarchy("Deep", 20);
+            System.out.println("compiling synthetic contexts...");
+        }
+        gen.compile();
+        List<Case> cases = createCases(gen, sizes);
+        if (caseIndex != -1) {
+            measure(cases.get(caseIndex), isQuick);
+            return;
+        }
+        System.out.println(String.format(Locale.US, "%-52s %14s %12s",
+                "benchmark", "ns/op", "bytes/op"));
+        for (int i = 0; i < cases.size(); i++) {
+            Case c = cases.get(i);
+            if (filter == null || c.name.contains(filter)) {
+                if (isForking) {
+                    fork(i, isQuick, gen.getDirectory());
+                } else {
+                    measure(c, isQuick);
+                }
+            }
+        }
+    }
+
+    private static Case mapping(String name, final Class<?> type,
+            final Class<?> mapped, final boolean isUncached) {
+        return new Case(name) {
+
+            GUIManager gui;
+            GUIElementBuilder builder = new FloatRangeBuilder();
+
+            @Override
+            public void run(int numOps) {
+                for (int i = 0; i < numOps; i++) {
+                    if (isUncached) {
+                        // any mapping change clears the resolution cache
+                        gui.addMapping(Void.class, builder);
+                    }
+                    sink = gui.getMappingForType(type);
+                }
+            }
+
+            @Override
+            public void setup() {
+                gui = new GUIManager(new HeadlessBackend(), false);
+                if (mapped != null) {
+                    gui.addMapping(mapped, builder);
+                }
+            }
+        };
+    }
+
+    /**
+     * Warms up the case, then runs it for 5 rounds of 500ms each (200ms in
+     * quick mode), calibrating the number of operations per round on the
+     * fly.
+     * 
+     * @param c
+     * @param isQuick
+     * @throws Exception
+     */
+    private static void measure(Case c, boolean isQuick) throws Exception {
+        c.setup();
+        long roundTime = (isQuick ? 200 : 500) * 1000000L;
+        int numOps = 1;
+        // warmup & calibration
+        long end = System.nanoTime() + roundTime * 2;
+        while (System.nanoTime() < end) {
+            long t = System.nanoTime();
+            c.run(numOps);
+            t = System.nanoTime() - t;
+            if (t < roundTime / 10 && numOps < (1 << 28)) {
+                numOps <<= 1;
+            }
+        }
+        long totalTime = 0, totalBytes = 0, totalOps = 0;
+        for (int i = 0; i < 5; i++) {
+            long bytes = allocatedBytes();
+            long t = System.nanoTime();
+            c.run(numOps);
+            totalTime += System.nanoTime() - t;
+            totalBytes += allocatedBytes() - bytes;
+            totalOps += numOps;
+        }
+        String alloc =
+                allocatedBytes() >= 0 ? String.format(Locale.US, "%12.1f",
+                        (double) totalBytes / totalOps) : "n/a";
+        System.out.println(String.format(Locale.US, "%-52s %14.1f %12s",
+                c.name, (double) totalTime / totalOps, alloc));
+    }
+
+    private static Case writeBack(String name, final String id,
+            final boolean isFrameSynchronized) {
+        return new Case(name) {
+
+            GUIManager gui;
+            GUIWidget widget;
+            float min, max;
+
+            @Override
+            public void run(int numOps) {
+                float delta = (max - min) / 1024;
+                for (int i = 0; i < numOps; i++) {
+                    widget.changeValue(min + (i & 1023) * delta);
+                    if (isFrameSynchronized && (i & 63) == 63) {
+                        gui.pre();
+                    }
+                }
+            }
+
+            @Override
+            public void setup() {
+                gui = new GUIManager(new HeadlessBackend(), true);
+                gui.createControllers(new WriteBackContext());
+                gui.setFrameSynchronized(isFrameSynchronized);
+                widget = gui.getWidget(id);
+                min = gui.getParameter(id).getMin();
+                max = gui.getParameter(id).getMax();
+            }
+        };
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import toxi.gui.CheckboxBuilder;
+import toxi.gui.GUIElement;
+import toxi.gui.GUIManager;
+import toxi.gui.GUIParameter;
+import toxi.gui.GUIWidget;
+import toxi.gui.HeadlessBackend;
+import toxi.gui.Range;
+
+/**
+ * Stress test for the threading contract of {@link GUIManager}: while the
+ * animation thread keeps creating controllers for new contexts, several
+ * worker threads look up controllers and parameters
+ * ({@link GUIManager#getBackendWidget(String)},
+ * {@link GUIManager#getWidget(String)},
+ * {@link GUIManager#getParameter(String)}), write parameters, query and
+ * hide subtrees and add new type mappings via
+ * {@link GUIManager#addMapping(Class, toxi.gui.GUIElementBuilder)}.
+ * 
+ * Violations counted: exceptions on any thread, mappings not visible right
+ * after they've been added, widgets created off the animation thread and
+ * registry entries not matching the widgets of the backend.
+ * 
+ * Usage: <code>java toxi.gui.bench.RegistryStressTest [contexts]
+ * [workers]</code>, exits with status 1 if any violation was observed.
+ */
+public class RegistryStressTest {
+
+    public static class Context {
+
+        @GUIElement
+        @Range(min = 0, max = 10)
+        public float a = 1;
+
+        @GUIElement
+        public boolean b = true;
+
+        @GUIElement
+        @Range(min = 0, max = 100)
+        public int c = 5;
+    }
+
+    /**
+     * Backend counting widgets created off the animation thread.
+     */
+    static class CheckedBackend extends HeadlessBackend {
+
+        volatile Thread animationThread;
+        final AtomicLong numOffThread = new AtomicLong();
+
+        private void check() {
+            if (Thread.currentThread() != animationThread) {
+                numOffThread.incrementAndGet();
+            }
+        }
+
+        @Override
+        public GUIWidget createSlider(String id, float min, float max,
+                float value, int x, int y, int w, int h) {
+            check();
+            return super.createSlider(id, min, max, value, x, y, w, h);
+        }
+
+        @Override
+        public GUIWidget createToggle(String id, boolean state, int x, int y,
+                int w, int h) {
+            check();
+            return super.createToggle(id, state, x, y, w, h);
+        }
+    }
+
+    // dummy types used for new mappings
+    static class Marker {
+    }
+
+    static class OtherMarker extends Marker {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int numContexts =
+                args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int numWorkers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        Logger.getLogger("toxi.gui").setLevel(Level.WARNING);
+        final CheckedBackend backend = new CheckedBackend();
+        final GUIManager gui = new GUIManager(backend, true);
+        gui.setFrameSynchronized(true);
+        final AtomicBoolean isRunning = new AtomicBoolean(true);
+        final AtomicLong numOps = new AtomicLong();
+        final AtomicLong numErrors = new AtomicLong();
+        final AtomicLong numStale = new AtomicLong();
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < numWorkers; t++) {
+            final long seed = t;
+            workers.add(new Thread("worker-" + t) {
+
+                @Override
+                public void run() {
+                    Random rnd = new Random(seed);
+                    while (isRunning.get()) {
+                        try {
+                            int k = rnd.nextInt(numContexts);
+                            String path = "ctx" + k;
+                            gui.getBackendWidget(path + ".a");
+                            gui.getWidget(path + ".b");
+                            GUIParameter p = gui.getParameter(path + ".c");
+                            if (p != null) {
+                                p.set(rnd.nextInt(100));
+                            }
+                            if ((k & 63) == 0) {
+                                gui.getWidgets(path);
+                            }
+                            if ((k & 255) == 0) {
+                                gui.setVisible(path, false);
+                            }
+                            if (gui.getMappingForType(Float.class) == null) {
+                                numStale.incrementAndGet();
+                            }
+                            if ((k & 1023) == 0) {
+                                Class<?> type =
+                                        (k & 1024) == 0 ? Marker.class
+                                                : OtherMarker.class;
+                                gui.addMapping(type, new CheckboxBuilder());
+                                if (gui.getMappingForType(type) == null) {
+                                    numStale.incrementAndGet();
+                                }
+                            }
+                            numOps.incrementAndGet();
+                        } catch (Throwable e) {
+                            numErrors.incrementAndGet();
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            });
+        }
+        backend.animationThread = Thread.currentThread();
+        gui.pre();
+        for (Thread t : workers) {
+            t.start();
+        }
+        long time = System.nanoTime();
+        for (int k = 0; k < numContexts; k++) {
+            gui.createControllers(new Context(), 0, 0, null, "ctx" + k);
+            gui.pre();
+        }
+        time = System.nanoTime() - time;
+        isRunning.set(false);
+        for (Thread t : workers) {
+            t.join();
+        }
+        // run any tasks marshalled during the last frame
+        gui.pre();
+        int numRegistered = gui.getWidgets("").size();
+        int numCreated = backend.getWidgets().size();
+        System.out.println("contexts: " + numContexts + " in "
+                + time / 1000000 + "ms, worker ops: " + numOps
+                + ", errors: " + numErrors + ", stale mappings: " + numStale
+                + ", created off thread: " + backend.numOffThread
+                + ", registered/created widgets: " + numRegistered + "/"
+                + numCreated);
+        boolean isValid =
+                numErrors.get() == 0 && numStale.get() == 0
+                        && backend.numOffThread.get() == 0
+                        && numRegistered == numCreated
+                        && numCreated == numContexts * 3;
+        System.exit(isValid ? 0 : 1);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package toxi.gui.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import toxi.gui.GUIElement;
+import toxi.gui.GUIManager;
+import toxi.gui.GUIRemoteEndpoint;
+import toxi.gui.HeadlessBackend;
+import toxi.gui.Range;
+
+/**
+ * Loopback test for {@link GUIRemoteEndpoint}: sends frames to a live
+ * endpoint via UDP and TCP like an external client would and checks that
+ * values are coalesced per parameter, values for unknown IDs are counted and
+ * dropped, values for parameters removed (and their indices reused) before
+ * the next frame are never applied to their successors and that
+ * <code>/dump</code> is answered with the parameter schema on both
+ * transports.
+ * 
+ * Usage: <code>java toxi.gui.bench.RemoteEndpointTest</code>, exits with
+ * status 1 if any check failed.
+ */
+public class RemoteEndpointTest {
+
+    public static class ValueContext {
+
+        @GUIElement
+        @Range(min = 0, max = 100)
+        public float a;
+
+        @GUIElement
+        @Range(min = 0, max = 100)
+        public float b;
+    }
+
+    private static final long TIMEOUT = 5000;
+
+    private static int numFailed;
+
+    private static void check(String name, boolean isPassed) {
+        System.out.println((isPassed ? "ok     " : "FAILED ") + name);
+        if (!isPassed) {
+            numFailed++;
+        }
+    }
+
+    private static byte[] frame(String[] ids, float[] values)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(GUIRemoteEndpoint.OP_SET);
+        out.writeShort(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            byte[] id = ids[i].getBytes("UTF-8");
+            out.writeByte(id.length);
+            out.write(id);
+            out.writeFloat(values[i]);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Logger.getLogger("toxi.gui").setLevel(Level.SEVERE);
+        GUIManager gui = new GUIManager(new HeadlessBackend(), true);
+        ValueContext c0 = new ValueContext();
+        ValueContext c1 = new ValueContext();
+        gui.createControllers(c0, 0, 0, null, "c0");
+        gui.createControllers(c1, 0, 0, null, "c1");
+        GUIRemoteEndpoint remote = gui.openRemoteEndpoint(0, 0);
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        DatagramSocket udp = new DatagramSocket();
+        udp.setSoTimeout((int) TIMEOUT);
+        Socket tcp = new Socket(loopback, remote.getTCPPort());
+        tcp.setSoTimeout((int) TIMEOUT);
+        DataOutputStream tcpOut = new DataOutputStream(tcp.getOutputStream());
+        DataInputStream tcpIn = new DataInputStream(tcp.getInputStream());
+        try {
+            // coalescing: 100 values for one parameter, only the last applied
+            long frames = remote.getNumFrames();
+            for (int k = 1; k <= 100; k++) {
+                byte[] f = frame(new String[] { "c0.a", "unknown" },
+                        new float[] { k * 0.5f, k });
+                udp.send(new DatagramPacket(f, f.length, loopback, remote
+                        .getUDPPort()));
+            }
+            waitForFrames(remote, frames + 100);
+            int applied = remote.apply();
+            check("udp values coalesced (applied " + applied + ")",
+                    applied == 1 && c0.a == 50);
+            check("unknown IDs counted (" + remote.getNumUnknown() + ")",
+                    remote.getNumUnknown() == 100);
+
+            // several pairs per frame via TCP
+            frames = remote.getNumFrames();
+            byte[] f =
+                    frame(new String[] { "c0.b", "c1.a", "c0.b" },
+                            new float[] { 10, 20, 30 });
+            tcpOut.writeInt(f.length);
+            tcpOut.write(f);
+            tcpOut.flush();
+            waitForFrames(remote, frames + 1);
+            applied = remote.apply();
+            check("tcp frame applied (applied " + applied + ")",
+                    applied == 2 && c0.b == 30 && c1.a == 20);
+
+            // value received for a parameter which is removed before the
+            // next frame, its index is reused by another context
+            frames = remote.getNumFrames();
+            f = frame(new String[] { "c1.b" }, new float[] { 77 });
+            tcpOut.writeInt(f.length);
+            tcpOut.write(f);
+            tcpOut.flush();
+            waitForFrames(remote, frames + 1);
+            gui.unbind(c1);
+            ValueContext c2 = new ValueContext();
+            gui.createControllers(c2, 0, 0, null, "c2");
+            applied = remote.apply();
+            check("stale value dropped (applied " + applied + ")",
+                    applied == 0 && c1.b == 0 && c2.a == 0 && c2.b == 0);
+
+            // schema via UDP, possibly split into several datagrams
+            byte[] dump = "/dump".getBytes("US-ASCII");
+            udp.send(new DatagramPacket(dump, dump.length, loopback, remote
+                    .getUDPPort()));
+            byte[] buf = new byte[GUIRemoteEndpoint.MAX_FRAME_SIZE];
+            DatagramPacket p = new DatagramPacket(buf, buf.length);
+            udp.receive(p);
+            String schema = new String(buf, 0, p.getLength(), "UTF-8");
+            check("udp /dump", schema.indexOf("c0.a\tfloat") != -1
+                    && schema.indexOf("c2.b\tfloat") != -1
+                    && schema.indexOf("c1.a") == -1);
+
+            // schema via TCP, length prefixed
+            tcpOut.writeInt(dump.length);
+            tcpOut.write(dump);
+            tcpOut.flush();
+            byte[] body = new byte[tcpIn.readInt()];
+            tcpIn.readFully(body);
+            schema = new String(body, "UTF-8");
+            check("tcp /dump", schema.indexOf("c0.b\tfloat") != -1
+                    && schema.indexOf("c2.a\tfloat") != -1);
+        } finally {
+            tcp.close();
+            udp.close();
+            gui.closeRemoteEndpoint();
+        }
+        System.out.println(numFailed + " checks failed");
+        System.exit(numFailed == 0 ? 0 : 1);
+    }
+
+    private static void waitForFrames(GUIRemoteEndpoint remote, long num)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (remote.getNumFrames() < num
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import toxi.gui.GUIElement;
+import toxi.gui.GUIManager;
+import toxi.gui.GUIParameterSnapshot;
+import toxi.gui.GUIWidget;
+import toxi.gui.HeadlessBackend;
+import toxi.util.datatypes.FloatRange;
+import toxi.util.datatypes.IntegerRange;
+
+/**
+ * Stress test for {@link GUIManager#snapshot()}: an event thread drags the
+ * min/max sliders of many {@link FloatRange} and {@link IntegerRange}
+ * fields at random (going through the regular min/max builder listeners),
+ * the animation thread applies the staged values and publishes snapshots in
+ * {@link GUIManager#pre()}, while several reader threads check every
+ * snapshot they get for torn min/max pairs (min > max) and versions going
+ * backwards.
+ * 
+ * Usage: <code>java toxi.gui.bench.SnapshotStressTest [seconds]
+ * [readers]</code>, exits with status 1 if any violation was observed.
+ */
+public class SnapshotStressTest {
+
+    public static class RangeContext {
+
+        @GUIElement
+        public FloatRange range = new FloatRange(0, 1000);
+
+        @GUIElement
+        public IntegerRange intRange = new IntegerRange(0, 1000);
+    }
+
+    private static final int NUM_CONTEXTS = 100;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int numReaders = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        Logger.getLogger("toxi.gui").setLevel(Level.WARNING);
+        final GUIManager gui = new GUIManager(new HeadlessBackend(), true);
+        final List<GUIWidget> sliders = new ArrayList<GUIWidget>();
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < NUM_CONTEXTS; i++) {
+            String path = "r" + i;
+            gui.createControllers(new RangeContext(), 0, 0, null, path);
+            ids.add(path + ".range");
+            ids.add(path + ".intRange");
+        }
+        for (String id : ids) {
+            sliders.add(gui.getWidget(id + "_min"));
+            sliders.add(gui.getWidget(id + "_max"));
+        }
+        gui.setFrameSynchronized(true);
+        gui.setSnapshotsEnabled(true);
+        gui.pre();
+        // snapshot indices of all min/max pairs
+        GUIParameterSnapshot first = gui.snapshot();
+        final int[] pairs = new int[ids.size() * 2];
+        for (int i = 0; i < ids.size(); i++) {
+            pairs[i * 2] = first.indexOf(ids.get(i) + "_min");
+            pairs[i * 2 + 1] = first.indexOf(ids.get(i) + "_max");
+        }
+        final AtomicBoolean isRunning = new AtomicBoolean(true);
+        final AtomicLong numReads = new AtomicLong();
+        final AtomicLong numTorn = new AtomicLong();
+        final AtomicLong numReordered = new AtomicLong();
+        final AtomicLong numEvents = new AtomicLong();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < numReaders; t++) {
+            threads.add(new Thread("reader-" + t) {
+
+                @Override
+                public void run() {
+                    long version = -1;
+                    while (isRunning.get()) {
+                        GUIParameterSnapshot s = gui.snapshot();
+                        if (s.getVersion() < version) {
+                            numReordered.incrementAndGet();
+                        }
+                        version = s.getVersion();
+                        for (int i = 0; i < pairs.length; i += 2) {
+                            if (s.get(pairs[i]) > s.get(pairs[i + 1])) {
+                                numTorn.incrementAndGet();
+                            }
+                        }
+                        numReads.incrementAndGet();
+                    }
+                }
+            });
+        }
+        threads.add(new Thread("events") {
+
+            @Override
+            public void run() {
+                Random rnd = new Random(23);
+                while (isRunning.get()) {
+                    GUIWidget w = sliders.get(rnd.nextInt(sliders.size()));
+                    w.changeValue(rnd.nextInt(1001));
+                    numEvents.incrementAndGet();
+                }
+            }
+        });
+        for (Thread t : threads) {
+            t.start();
+        }
+        long end = System.currentTimeMillis() + seconds * 1000L;
+        int numFrames = 0;
+        while (System.currentTimeMillis() < end) {
+            gui.pre();
+            numFrames++;
+            Thread.yield();
+        }
+        isRunning.set(false);
+        for (Thread t : threads) {
+            t.join();
+        }
+        System.out.println("frames: " + numFrames + ", events: " + numEvents
+                + ", snapshot reads: " + numReads + ", torn pairs: "
+                + numTorn + ", versions out of order: " + numReordered);
+        System.exit(numTorn.get() == 0 && numReordered.get() == 0 ? 0 : 1);
+    }
+}
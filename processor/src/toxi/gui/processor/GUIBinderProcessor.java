@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Annotation processor generating a <code>toxi.gui.GUIBinder</code>
+ * implementation for every class declaring fields annotated with
+ * <code>@GUIElement</code>, <code>@GUISubContext</code> or
+ * <code>@GUIFieldSelector</code>. The generated binders provide plain field
+ * reads/writes for all annotated public fields and are picked up
+ * automatically by <code>GUIManager</code> at runtime.
+ * 
+ * This processor requires Java 6 and is built separately from the main
+ * library. To use it, add its jar to the annotation processor path of the
+ * compiler, e.g. <code>javac -processorpath cp5magic-processor.jar ...</code>
+ */
+@SupportedAnnotationTypes( { GUIBinderProcessor.GUI_ELEMENT,
+        GUIBinderProcessor.GUI_SUB_CONTEXT, GUIBinderProcessor.GUI_FIELD_SELECTOR })
+public class GUIBinderProcessor extends AbstractProcessor {
+
+    static final String GUI_ELEMENT = "toxi.gui.GUIElement";
+    static final String GUI_SUB_CONTEXT = "toxi.gui.GUISubContext";
+    static final String GUI_FIELD_SELECTOR = "toxi.gui.GUIFieldSelector";
+
+    static final String BINDER_SUFFIX = "GUIBinder";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations,
+            RoundEnvironment env) {
+        Set<TypeElement> contexts = new LinkedHashSet<TypeElement>();
+        for (TypeElement a : annotations) {
+            for (Element e : env.getElementsAnnotatedWith(a)) {
+                if (e.getKind() == ElementKind.FIELD) {
+                    contexts.add((TypeElement) e.getEnclosingElement());
+                }
+            }
+        }
+        for (TypeElement type : contexts) {
+            if (isAccessible(type)) {
+                generateBinder(type);
+            } else {
+                note(type, "skipping inaccessible context class");
+            }
+        }
+        return false;
+    }
+
+    private List<VariableElement> getBoundFields(TypeElement type) {
+        List<VariableElement> fields = new ArrayList<VariableElement>();
+        for (Element e : type.getEnclosedElements()) {
+            if (e.getKind() == ElementKind.FIELD && isBound(e)) {
+                if (e.getModifiers().contains(Modifier.PUBLIC)) {
+                    fields.add((VariableElement) e);
+                } else {
+                    processingEnv.getMessager().printMessage(
+                            Diagnostic.Kind.WARNING,
+                            "annotated field isn't public and will be ignored",
+                            e);
+                }
+            }
+        }
+        return fields;
+    }
+
+    private boolean isBound(Element e) {
+        for (AnnotationMirror am : e.getAnnotationMirrors()) {
+            String name =
+                    ((TypeElement) am.getAnnotationType().asElement())
+                            .getQualifiedName().toString();
+            if (name.equals(GUI_ELEMENT) || name.equals(GUI_SUB_CONTEXT)
+                    || name.equals(GUI_FIELD_SELECTOR)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isAccessible(TypeElement type) {
+        Element e = type;
+        while (e instanceof TypeElement) {
+            TypeElement t = (TypeElement) e;
+            if (t.getModifiers().contains(Modifier.PRIVATE)
+                    || t.getNestingKind() == NestingKind.LOCAL
+                    || t.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            e = t.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private boolean isAccessible(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return isAccessible(((ArrayType) type).getComponentType());
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            return isAccessible((TypeElement) ((DeclaredType) type).asElement());
+        }
+        return type.getKind().isPrimitive();
+    }
+
+    private void generateBinder(TypeElement type) {
+        List<VariableElement> fields = getBoundFields(type);
+        PackageElement pkg =
+                processingEnv.getElementUtils().getPackageOf(type);
+        String pkgName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binaryName =
+                processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName =
+                (pkgName.length() > 0 ? binaryName.substring(pkgName.length() + 1)
+                        : binaryName) + BINDER_SUFFIX;
+        String fqn = pkgName.length() > 0 ? pkgName + "." + simpleName : simpleName;
+        try {
+            PrintWriter out =
+                    new PrintWriter(processingEnv.getFiler().createSourceFile(
+                            fqn, type).openWriter());
+            try {
+                writeBinder(out, pkgName, simpleName, type, fields);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "can't write binder: " + fqn + " (" + e.getMessage() + ")",
+                    type);
+        }
+    }
+
+    private void note(Element e, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, msg, e);
+    }
+
+    private void writeAccessor(PrintWriter out, String ctx, VariableElement f) {
+        String name = f.getSimpleName().toString();
+        TypeMirror type = f.asType();
+        TypeKind kind = type.getKind();
+        boolean isFinal = f.getModifiers().contains(Modifier.FINAL);
+        String ref = "((" + ctx + ") context)." + name;
+        if (f.getModifiers().contains(Modifier.STATIC)) {
+            ref = ctx + "." + name;
+        }
+        out.println("                return new GeneratedFieldAccessor(\""
+                + name + "\") {");
+        writeMethod(out, "Object get(Object context)", "return " + ref + ";");
+        if (kind == TypeKind.BOOLEAN) {
+            writeMethod(out, "boolean getBoolean(Object context)", "return "
+                    + ref + ";");
+        }
+        if (isWideningTo(kind, TypeKind.FLOAT)) {
+            writeMethod(out, "float getFloat(Object context)", "return " + ref
+                    + ";");
+        }
+        if (isWideningTo(kind, TypeKind.INT)) {
+            writeMethod(out, "int getInt(Object context)", "return " + ref
+                    + ";");
+        }
+        if (!isFinal) {
+            if (kind.isPrimitive()) {
+                String boxed =
+                        processingEnv.getTypeUtils().boxedClass(
+                                processingEnv.getTypeUtils().getPrimitiveType(
+                                        kind)).getQualifiedName().toString();
+                writeMethod(out, "void set(Object context, Object value)", ref
+                        + " = (" + boxed + ") value;");
+            } else if (isAccessible(type)) {
+                String erasure =
+                        processingEnv.getTypeUtils().erasure(type).toString();
+                writeMethod(out, "void set(Object context, Object value)", ref
+                        + " = (" + erasure + ") value;");
+            }
+            if (kind == TypeKind.BOOLEAN) {
+                writeMethod(out,
+                        "void setBoolean(Object context, boolean value)", ref
+                                + " = value;");
+            }
+            if (isWideningTo(TypeKind.FLOAT, kind)) {
+                writeMethod(out, "void setFloat(Object context, float value)",
+                        ref + " = value;");
+            }
+            if (isWideningTo(TypeKind.INT, kind)) {
+                writeMethod(out, "void setInt(Object context, int value)", ref
+                        + " = value;");
+            }
+        }
+        out.println("                };");
+    }
+
+    private void writeBinder(PrintWriter out, String pkgName,
+            String simpleName, TypeElement type, List<VariableElement> fields) {
+        String ctx = type.getQualifiedName().toString();
+        out.println("// generated by " + getClass().getName() + ", do not edit");
+        if (pkgName.length() > 0) {
+            out.println("package " + pkgName + ";");
+            out.println();
+        }
+        out.println("import java.util.HashMap;");
+        out.println();
+        out.println("import toxi.gui.FieldAccessor;");
+        out.println("import toxi.gui.GUIBinder;");
+        out.println("import toxi.gui.GeneratedFieldAccessor;");
+        out.println();
+        out.println("@SuppressWarnings(\"unchecked\")");
+        out.println("public final class " + simpleName + " implements GUIBinder {");
+        out.println();
+        out.print("    private static final String[] FIELDS = {");
+        for (int i = 0; i < fields.size(); i++) {
+            out.print((i > 0 ? ", " : " ") + "\"" + fields.get(i).getSimpleName()
+                    + "\"");
+        }
+        out.println(" };");
+        out.println();
+        out.println("    private static final HashMap<String, Integer> INDEX =");
+        out.println("            new HashMap<String, Integer>();");
+        out.println();
+        out.println("    static {");
+        out.println("        for (int i = 0; i < FIELDS.length; i++) {");
+        out.println("            INDEX.put(FIELDS[i], i);");
+        out.println("        }");
+        out.println("    }");
+        out.println();
+        out.println("    public FieldAccessor getAccessor(String fieldName) {");
+        out.println("        Integer id = INDEX.get(fieldName);");
+        out.println("        if (id == null) {");
+        out.println("            return null;");
+        out.println("        }");
+        out.println("        switch (id) {");
+        for (int i = 0; i < fields.size(); i++) {
+            out.println("            case " + i + ":");
+            writeAccessor(out, ctx, fields.get(i));
+        }
+        out.println("            default:");
+        out.println("                return null;");
+        out.println("        }");
+        out.println("    }");
+        out.println();
+        out.println("    public String[] getFieldNames() {");
+        out.println("        return FIELDS.clone();");
+        out.println("    }");
+        out.println("}");
+    }
+
+    private void writeMethod(PrintWriter out, String signature, String body) {
+        out.println();
+        out.println("                    @Override");
+        out.println("                    public " + signature + " {");
+        out.println("                        " + body);
+        out.println("                    }");
+    }
+
+    /**
+     * @return true, if a value of type <code>from</code> can be assigned to
+     *         <code>to</code> by identity or primitive widening conversion
+     */
+    private boolean isWideningTo(TypeKind from, TypeKind to) {
+        if (from == to) {
+            return from.isPrimitive() && from != TypeKind.BOOLEAN;
+        }
+        switch (to) {
+            case INT:
+                return from == TypeKind.BYTE || from == TypeKind.SHORT
+                        || from == TypeKind.CHAR;
+            case LONG:
+                return isWideningTo(from, TypeKind.INT) || from == TypeKind.INT;
+            case FLOAT:
+            case DOUBLE:
+                return isWideningTo(from, TypeKind.LONG)
+                        || from == TypeKind.LONG
+                        || (to == TypeKind.DOUBLE && from == TypeKind.FLOAT);
+            default:
+                return false;
+        }
+    }
+}
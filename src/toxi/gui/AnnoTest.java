@@ -79,7 +79,7 @@ public class AnnoTest extends PApplet {
     @GUIFieldSelector(fields = "y", horizontal = true)
     public Vec3D size = new Vec3D();
 
-    private GUIManager gui;
+    private ControlP5GUIManager gui;
 
     public void doRestart(ControlEvent e) {
         System.out.println("--> " + e.controller().name());
@@ -94,7 +94,7 @@ public class AnnoTest extends PApplet {
 
     private void initGUI() {
         ControlP5 cp5 = new ControlP5(this);
-        gui = new GUIManager(cp5);
+        gui = new ControlP5GUIManager(cp5);
         gui.createControllers(this);
         gui.addListenerFor("isActive", "toggleActive", this);
         gui.addListenerFor("btRestart", "doRestart", this);
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import toxi.geom.Vec2D;
+import toxi.math.MathUtils;
+import toxi.util.datatypes.FloatRange;
+import toxi.util.datatypes.IntegerRange;
+
+/**
+ * Builder for <code>float[]</code>, <code>int[]</code> and
+ * <code>boolean[]</code> fields. Numeric arrays are shown as a multi-slider
+ * (one narrow vertical slider per element, sharing the field's
+ * {@link Range}), boolean arrays as a matrix of toggles. Elements wrap into
+ * rows of {@link #columns} controllers.
+ * 
+ * Each element is bound as a separate {@link GUIParameter} with the ID
+ * <code>field.index</code>, using an {@link ArrayElementAccessor}, so
+ * controller events are written straight into the array. After changing
+ * many elements from code, use {@link GUIManager#syncControllers(Object)}
+ * with the array to refresh all its controllers at once.
+ * 
+ * Parameters are bound to the array instance the field references when the
+ * controllers are created, not to the field. Don't reassign the field
+ * afterwards (copy new values into the existing array instead), else the
+ * controllers keep reading and writing the old array. To switch to an array
+ * of a different length, {@link GUIManager#unbind(Object)} the context and
+ * create its controllers again. Fields which are null are skipped.
+ */
+public class ArrayBuilder implements GUIElementBuilder, GUIMeasurable {
+
+    public int columns = 32;
+    public int cellWidth = 10;
+    public int cellHeight = 60;
+    public int gap = 2;
+
+    public FloatRange defaultRange = new FloatRange(0f, 1f);
+    public IntegerRange defaultIntRange = new IntegerRange(0, 100);
+
+    public List<GUIWidget> createElementsFor(final Object context,
+            final Field field, Vec2D pos, String id, String label,
+            GUIManager gui) throws IllegalArgumentException,
+            IllegalAccessException {
+        Object array = gui.getAccessorFor(field).get(context);
+        if (array == null) {
+            logger.warning("array is null for fieldID: " + id
+                    + ", skipping...");
+            return new ArrayList<GUIWidget>(0);
+        }
+        int type;
+        int num;
+        if (array instanceof float[]) {
+            type = GUIParameter.FLOAT;
+            num = ((float[]) array).length;
+        } else if (array instanceof int[]) {
+            type = GUIParameter.INT;
+            num = ((int[]) array).length;
+        } else {
+            type = GUIParameter.BOOLEAN;
+            num = ((boolean[]) array).length;
+        }
+        float min = 0, max = 1;
+        if (type != GUIParameter.BOOLEAN) {
+            Range ra = field.getAnnotation(Range.class);
+            if (ra != null) {
+                min = ra.min();
+                max = ra.max();
+            } else {
+                logger.warning("missing @Range for fieldID: " + id
+                        + ", using default...");
+                if (type == GUIParameter.INT) {
+                    min = defaultIntRange.min;
+                    max = defaultIntRange.max;
+                } else {
+                    min = defaultRange.min;
+                    max = defaultRange.max;
+                }
+            }
+        }
+        GUIBackend backend = gui.getBackend();
+        int h = type == GUIParameter.BOOLEAN ? cellWidth : cellHeight;
+        List<GUIWidget> controllers = new ArrayList<GUIWidget>(num);
+        int[] indices = new int[num];
+        for (int i = 0; i < num; i++) {
+            String elementID = GUIManager.getChildID(id, String.valueOf(i));
+            ArrayElementAccessor accessor = new ArrayElementAccessor(i);
+            final GUIParameter param =
+                    gui.bindParameter(elementID, array, accessor, type, min,
+                            max);
+            indices[i] = param.getIndex();
+            int x = (int) pos.x + (i % columns) * (cellWidth + gap);
+            int y = (int) pos.y + (i / columns) * (h + gap);
+            GUIWidget ctrl;
+            if (type == GUIParameter.BOOLEAN) {
+                ctrl =
+                        backend.createToggle(elementID, accessor
+                                .getBoolean(array), x, y, cellWidth, h);
+            } else {
+                ctrl =
+                        backend.createSlider(elementID, min, max, MathUtils
+                                .clip(accessor.getFloat(array), min, max), x,
+                                y, cellWidth, h);
+            }
+            ctrl.setLabel(i == 0 ? label : "");
+            ctrl.addListener(new GUIWidgetListener() {
+
+                public void widgetChanged(GUIWidget w, float value) {
+                    param.set(value);
+                }
+            });
+            controllers.add(ctrl);
+        }
+        gui.getParameters().addArrayIndices(array, indices);
+        return controllers;
+    }
+
+    /**
+     * @return spacing needed for a single row of sliders, use
+     *         {@link #getSpacingFor(Object)} for the actual spacing
+     */
+    public Vec2D getMinSpacing() {
+        return new Vec2D(cellWidth + gap + 20, cellHeight + gap + 20);
+    }
+
+    public Vec2D getSpacingFor(Object value) {
+        int num;
+        int h = cellHeight;
+        if (value instanceof float[]) {
+            num = ((float[]) value).length;
+        } else if (value instanceof int[]) {
+            num = ((int[]) value).length;
+        } else if (value instanceof boolean[]) {
+            num = ((boolean[]) value).length;
+            h = cellWidth;
+        } else {
+            return getMinSpacing();
+        }
+        int cols = Math.max(Math.min(num, columns), 1);
+        int rows = Math.max((num + columns - 1) / columns, 1);
+        return new Vec2D(cols * (cellWidth + gap) + 20, rows * (h + gap) + 20);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+/**
+ * {@link FieldAccessor} for a single element of a <code>float[]</code>,
+ * <code>int[]</code> or <code>boolean[]</code> array. The array itself is
+ * used as context, so elements are read and written directly by index,
+ * without any reflection or boxing.
+ */
+public class ArrayElementAccessor implements FieldAccessor {
+
+    protected final int index;
+
+    public ArrayElementAccessor(int index) {
+        this.index = index;
+    }
+
+    protected GUIBindingException fail(String op, Object context) {
+        return new GUIBindingException("can't " + op + " element: " + index
+                + " of: "
+                + (context != null ? context.getClass().getName() : null));
+    }
+
+    public Object get(Object context) {
+        if (context instanceof float[]) {
+            return getFloat(context);
+        } else if (context instanceof int[]) {
+            return getInt(context);
+        }
+        return getBoolean(context);
+    }
+
+    public boolean getBoolean(Object context) {
+        try {
+            if (context instanceof boolean[]) {
+                return ((boolean[]) context)[index];
+            }
+            return getFloat(context) > 0;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw fail("read", context);
+        }
+    }
+
+    public float getFloat(Object context) {
+        try {
+            if (context instanceof float[]) {
+                return ((float[]) context)[index];
+            } else if (context instanceof int[]) {
+                return ((int[]) context)[index];
+            } else if (context instanceof boolean[]) {
+                return ((boolean[]) context)[index] ? 1 : 0;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // handled below
+        }
+        throw fail("read", context);
+    }
+
+    /**
+     * @return element index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public int getInt(Object context) {
+        try {
+            if (context instanceof int[]) {
+                return ((int[]) context)[index];
+            }
+            return (int) getFloat(context);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw fail("read", context);
+        }
+    }
+
+    public String getName() {
+        return String.valueOf(index);
+    }
+
+    public void set(Object context, Object value) {
+        if (value instanceof Boolean) {
+            setBoolean(context, (Boolean) value);
+        } else if (value instanceof Number) {
+            setFloat(context, ((Number) value).floatValue());
+        } else {
+            throw fail("write", context);
+        }
+    }
+
+    public void setBoolean(Object context, boolean value) {
+        if (context instanceof boolean[]) {
+            try {
+                ((boolean[]) context)[index] = value;
+                return;
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw fail("write", context);
+            }
+        }
+        setFloat(context, value ? 1 : 0);
+    }
+
+    public void setFloat(Object context, float value) {
+        try {
+            if (context instanceof float[]) {
+                ((float[]) context)[index] = value;
+                return;
+            } else if (context instanceof int[]) {
+                ((int[]) context)[index] = (int) value;
+                return;
+            } else if (context instanceof boolean[]) {
+                ((boolean[]) context)[index] = value > 0;
+                return;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // handled below
+        }
+        throw fail("write", context);
+    }
+
+    public void setInt(Object context, int value) {
+        if (context instanceof int[]) {
+            try {
+                ((int[]) context)[index] = value;
+                return;
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw fail("write", context);
+            }
+        }
+        setFloat(context, value);
+    }
+
+    @Override
+    public String toString() {
+        return "ArrayElementAccessor: " + index;
+    }
+}
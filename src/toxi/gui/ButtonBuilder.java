@@ -25,26 +25,27 @@ import java.util.ArrayList;
 import java.util.List;
 
 import toxi.geom.Vec2D;
-import controlP5.Controller;
 
 public class ButtonBuilder implements GUIElementBuilder {
 
-    public List<Controller> createElementsFor(final Object context,
+    public List<GUIWidget> createElementsFor(final Object context,
             final Field field, Vec2D pos, String id, String label,
             GUIManager gui) throws IllegalArgumentException,
             IllegalAccessException {
+        FieldAccessor accessor = gui.getAccessorFor(field);
+        Object value = accessor.get(context);
         int buttonID;
-        if (field.get(context).getClass() == String.class) {
-            label = (String) field.get(context);
+        if (value.getClass() == String.class) {
+            label = (String) value;
             buttonID = 0;
         } else {
-            buttonID = field.getInt(context);
+            buttonID = accessor.getInt(context);
         }
-        Controller ctrl =
-                gui.getGUI().addButton(id, buttonID, (int) pos.x, (int) pos.y,
-                        100, 14);
+        GUIWidget ctrl =
+                gui.getBackend().createButton(id, buttonID, (int) pos.x,
+                        (int) pos.y, 100, 14);
         ctrl.setLabel(label);
-        List<Controller> controllers = new ArrayList<Controller>(1);
+        List<GUIWidget> controllers = new ArrayList<GUIWidget>(1);
         controllers.add(ctrl);
         return controllers;
     }
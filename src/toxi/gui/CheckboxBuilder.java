@@ -25,33 +25,29 @@ import java.util.ArrayList;
 import java.util.List;
 
 import toxi.geom.Vec2D;
-import controlP5.ControlEvent;
-import controlP5.ControlListener;
-import controlP5.Controller;
-import controlP5.Toggle;
 
 public class CheckboxBuilder implements GUIElementBuilder {
 
-    public List<Controller> createElementsFor(final Object context,
+    public List<GUIWidget> createElementsFor(final Object context,
             final Field field, Vec2D pos, String id, String label,
             GUIManager gui) throws IllegalArgumentException,
             IllegalAccessException {
-        boolean state = field.getBoolean(context);
-        Toggle ctrl =
-                gui.getGUI().addToggle(id, state, (int) pos.x, (int) pos.y, 14,
-                        14);
+        FieldAccessor accessor = gui.getAccessorFor(field);
+        boolean state = accessor.getBoolean(context);
+        final GUIParameter param =
+                gui.bindParameter(id, context, accessor, GUIParameter.BOOLEAN,
+                        0, 1);
+        GUIWidget ctrl =
+                gui.getBackend().createToggle(id, state, (int) pos.x,
+                        (int) pos.y, 14, 14);
         ctrl.setLabel(label);
-        ctrl.addListener(new ControlListener() {
-
-            public void controlEvent(ControlEvent e) {
-                try {
-                    field.setBoolean(context, e.value() > 0);
-                } catch (IllegalArgumentException e1) {
-                } catch (IllegalAccessException e1) {
-                }
+        ctrl.addListener(new GUIWidgetListener() {
+
+            public void widgetChanged(GUIWidget w, float value) {
+                param.set(value);
             }
         });
-        List<Controller> controllers = new ArrayList<Controller>(1);
+        List<GUIWidget> controllers = new ArrayList<GUIWidget>(1);
         controllers.add(ctrl);
         return controllers;
     }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import controlP5.ControlEvent;
+import controlP5.ControlListener;
+import controlP5.ControlP5;
+import controlP5.Controller;
+import controlP5.Radio;
+
+/**
+ * {@link GUIBackend} creating ControlP5 controllers.
+ */
+public class ControlP5Backend implements GUIBackend {
+
+    /**
+     * Creates a {@link MethodControlListener} forwarding events to the method
+     * <code>name(ControlEvent)</code> of the context object.
+     * 
+     * @param context
+     * @param name
+     * @return listener
+     * @throws IllegalArgumentException
+     *             if the callback method doesn't exist
+     */
+    public static ControlListener createMethodListener(Object context,
+            String name) {
+        return new MethodControlListener(context, name);
+    }
+
+    /**
+     * Wraps the given listener to record its execution time in the metrics.
+     * 
+     * @param metrics
+     * @param id
+     *            controller ID
+     * @param listener
+     * @return timed listener
+     */
+    static ControlListener createTimedListener(final GUIMetrics metrics,
+            String id, final ControlListener listener) {
+        final int slot = metrics.getSlot(id);
+        return new ControlListener() {
+
+            public void controlEvent(ControlEvent e) {
+                long t = System.nanoTime();
+                try {
+                    listener.controlEvent(e);
+                } finally {
+                    metrics.recordCallback(slot, System.nanoTime() - t);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps an existing ControlP5 controller, e.g. for custom
+     * {@link GUIElementBuilder}s creating their controllers directly.
+     * 
+     * @param ctrl
+     * @return widget
+     */
+    public static GUIWidget wrap(Controller ctrl) {
+        return new ControlP5Widget(ctrl);
+    }
+
+    protected final ControlP5 gui;
+
+    public ControlP5Backend(ControlP5 gui) {
+        this.gui = gui;
+    }
+
+    public GUIWidget createButton(String id, float value, int x, int y,
+            int width, int height) {
+        return wrap(gui.addButton(id, value, x, y, width, height));
+    }
+
+    public GUIWidget createRadio(String id, String[] items, int x, int y) {
+        Radio r = gui.addRadio(id, x, y);
+        r.setBroadcast(false);
+        for (int i = 0; i < items.length; i++) {
+            r.addItem(items[i], i);
+        }
+        r.setBroadcast(true);
+        return wrap(r);
+    }
+
+    public GUIWidget createSlider(String id, float min, float max, float value,
+            int x, int y, int width, int height) {
+        return wrap(gui.addSlider(id, min, max, value, x, y, width, height));
+    }
+
+    public GUIWidget createToggle(String id, boolean state, int x, int y,
+            int width, int height) {
+        return wrap(gui.addToggle(id, state, x, y, width, height));
+    }
+
+    public String getActiveTab() {
+        return gui.controlWindow.currentTab().name();
+    }
+
+    public ControlP5 getGUI() {
+        return gui;
+    }
+
+    public boolean registerPreHook(GUIManager manager) {
+        if (ControlP5.papplet != null) {
+            ControlP5.papplet.registerPre(manager);
+            return true;
+        }
+        return false;
+    }
+}
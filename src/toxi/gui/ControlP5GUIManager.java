@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import controlP5.ControlListener;
+import controlP5.ControlP5;
+import controlP5.Controller;
+
+/**
+ * {@link GUIManager} creating its controllers with ControlP5 (via a
+ * {@link ControlP5Backend}). Adds access to the ControlP5 controllers and
+ * support for ControlP5 listeners. Only this class and the backend depend on
+ * ControlP5, the core of the library works with any {@link GUIBackend}.
+ */
+public class ControlP5GUIManager extends GUIManager {
+
+    protected final ControlP5 gui;
+
+    public ControlP5GUIManager(ControlP5 gui) {
+        this(gui, true);
+    }
+
+    public ControlP5GUIManager(ControlP5 gui, boolean useDefaults) {
+        super(new ControlP5Backend(gui), useDefaults);
+        this.gui = gui;
+    }
+
+    /**
+     * Attaches the given ControlP5 listener to the controller with the given
+     * ID.
+     * 
+     * @param id
+     *            controller ID
+     * @param listener
+     * @return true, if the controller exists
+     */
+    public boolean addListenerFor(String id, ControlListener listener) {
+        Controller ctrl = getForID(id);
+        if (ctrl != null) {
+            GUIMetrics metrics = metrics();
+            if (metrics != null) {
+                listener =
+                        ControlP5Backend.createTimedListener(metrics, id,
+                                listener);
+            }
+            ctrl.addListener(listener);
+            return true;
+        }
+        logger.warning("no ControlP5 controller with ID: " + id);
+        return false;
+    }
+
+    /**
+     * Forwards events of the controller with the given ID to the method
+     * <code>name(ControlEvent)</code> of the context object. The method is
+     * resolved once, here.
+     * 
+     * @param id
+     *            controller ID
+     * @param name
+     *            callback method name
+     * @param context
+     *            object declaring the callback
+     * @throws IllegalArgumentException
+     *             if the callback method doesn't exist
+     */
+    public void addListenerFor(String id, String name, Object context) {
+        addListenerFor(id, ControlP5Backend
+                .createMethodListener(context, name));
+    }
+
+    /**
+     * @param id
+     * @return ControlP5 controller with the given ID or null, if there's none.
+     *         See {@link #getBackendWidget(String)} for lazy mode.
+     */
+    public Controller getForID(String id) {
+        GUIWidget w = getBackendWidget(id);
+        return w instanceof ControlP5Widget ? ((ControlP5Widget) w)
+                .getController() : null;
+    }
+
+    /**
+     * @return ControlP5 instance
+     */
+    public ControlP5 getGUI() {
+        return gui;
+    }
+}
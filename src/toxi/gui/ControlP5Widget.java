@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import controlP5.ControlEvent;
+import controlP5.ControlListener;
+import controlP5.Controller;
+
+/**
+ * {@link GUIWidget} wrapper for a ControlP5 {@link Controller}.
+ */
+public class ControlP5Widget implements GUIWidget {
+
+    protected final Controller ctrl;
+
+    public ControlP5Widget(Controller ctrl) {
+        this.ctrl = ctrl;
+    }
+
+    public void addListener(final GUIWidgetListener listener) {
+        ctrl.addListener(new ControlListener() {
+
+            public void controlEvent(ControlEvent e) {
+                listener.widgetChanged(ControlP5Widget.this, e.value());
+            }
+        });
+    }
+
+    public void changeValue(float value) {
+        ctrl.changeValue(value);
+    }
+
+    public Controller getController() {
+        return ctrl;
+    }
+
+    public String getID() {
+        return ctrl.name();
+    }
+
+    public float getValue() {
+        return ctrl.value();
+    }
+
+    public float getX() {
+        return ctrl.position().x;
+    }
+
+    public float getY() {
+        return ctrl.position().y;
+    }
+
+    public boolean isVisible() {
+        return ctrl.isVisible();
+    }
+
+    public void remove() {
+        ctrl.remove();
+    }
+
+    public void setLabel(String label) {
+        ctrl.setLabel(label);
+    }
+
+    public void setPosition(float x, float y) {
+        ctrl.setPosition(x, y);
+    }
+
+    public void setTab(String tab) {
+        ctrl.setTab(tab);
+    }
+
+    public void setValue(float value) {
+        boolean isBroadcast = ctrl.isBroadcast();
+        ctrl.setBroadcast(false);
+        ctrl.setValue(value);
+        ctrl.setBroadcast(isBroadcast);
+    }
+
+    public void setValueLabel(String label) {
+        ctrl.setValueLabel(label);
+    }
+
+    public void setVisible(boolean state) {
+        if (state) {
+            ctrl.show();
+        } else {
+            ctrl.hide();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+/**
+ * Typed read/write access to a single field of a context object. Accessors
+ * are created once per field (see {@link GUIManager#getAccessorFor}) and are
+ * used by {@link GUIElementBuilder} implementations to update the context
+ * from within controller listeners. All methods throw a
+ * {@link GUIBindingException} if the value can't be read or written.
+ */
+public interface FieldAccessor {
+
+    public Object get(Object context);
+
+    public boolean getBoolean(Object context);
+
+    public float getFloat(Object context);
+
+    public int getInt(Object context);
+
+    /**
+     * @return name of the field this accessor is bound to
+     */
+    public String getName();
+
+    public void set(Object context, Object value);
+
+    public void setBoolean(Object context, boolean value);
+
+    public void setFloat(Object context, float value);
+
+    public void setInt(Object context, int value);
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+/**
+ * Widget backend used by the {@link GUIManager} and all
+ * {@link GUIElementBuilder}s. The binding core (annotation scanning, ranges,
+ * accessors, parameters and layout) only talks to widgets through this
+ * interface, so the same bindings can be used with ControlP5 (see
+ * {@link ControlP5Backend}) or without any display (see
+ * {@link HeadlessBackend}).
+ */
+public interface GUIBackend {
+
+    public GUIWidget createButton(String id, float value, int x, int y,
+            int width, int height);
+
+    /**
+     * @param id
+     * @param items
+     *            item labels, the value of each item is its index
+     * @param x
+     * @param y
+     * @return radio group widget
+     */
+    public GUIWidget createRadio(String id, String[] items, int x, int y);
+
+    public GUIWidget createSlider(String id, float min, float max, float value,
+            int x, int y, int width, int height);
+
+    public GUIWidget createToggle(String id, boolean state, int x, int y,
+            int width, int height);
+
+    /**
+     * @return name of the currently displayed tab
+     */
+    public String getActiveTab();
+
+    /**
+     * Arranges for {@link GUIManager#pre()} to be called before each frame,
+     * if the backend is driven by an animation loop.
+     * 
+     * @param gui
+     * @return true, if the hook has been registered, false if
+     *         {@link GUIManager#pre()} has to be called manually
+     */
+    public boolean registerPreHook(GUIManager gui);
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+/**
+ * Reflection-free field access for a single context class. Implementations
+ * are usually generated at compile time by the optional
+ * <code>toxi.gui.processor.GUIBinderProcessor</code> and are named after the
+ * binary name of their context class with a <code>GUIBinder</code> suffix
+ * (e.g. <code>Foo$BarGUIBinder</code> for the nested class
+ * <code>Foo.Bar</code>). If such a class is found at runtime,
+ * {@link GUIManager} uses it instead of scanning the context class and its
+ * accessors instead of reflective ones.
+ */
+public interface GUIBinder {
+
+    public static final String SUFFIX = "GUIBinder";
+
+    /**
+     * @param fieldName
+     * @return direct accessor for the given field or null, if the field isn't
+     *         bound
+     */
+    public FieldAccessor getAccessor(String fieldName);
+
+    /**
+     * @return names of all annotated fields declared by the context class, in
+     *         declaration order
+     */
+    public String[] getFieldNames();
+}
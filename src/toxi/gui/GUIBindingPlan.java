@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable, pre-compiled description of all GUI bindings declared in a
+ * context class. A plan is built once per class by scanning its public fields
+ * for {@link GUIElement}, {@link GUISubContext}, {@link GUIFieldSelector},
+ * {@link Range} and {@link Smooth} annotations and is then shared
+ * process-wide, so that
+ * {@link GUIManager#createControllers(Object, int, int, String)} only needs to
+ * replay the plan against a new context instance.
+ * 
+ * Plans are cached per class in a weak map (values are softly referenced, so
+ * the cache never pins a class loader). If a generated {@link GUIBinder}
+ * exists for a class, only the fields it lists are compiled.
+ */
+public final class GUIBindingPlan {
+
+    /**
+     * Binding types, listed in the order of precedence used when a field
+     * carries more than one of the annotations.
+     */
+    public enum Kind {
+        SUB_CONTEXT, FIELD_SELECTOR, ELEMENT
+    }
+
+    /**
+     * A single compiled field binding.
+     */
+    public static final class Entry {
+
+        public final Field field;
+        public final GUIElement element;
+        public final Kind kind;
+        public final String label;
+
+        /**
+         * Builder explicitly requested via {@link GUIElement#builder()} or
+         * null, if the builder is to be resolved via the type mappings of the
+         * {@link GUIManager}.
+         */
+        public final GUIElementBuilder builder;
+        public final Range range;
+
+        /**
+         * Smoothing requested for the element's parameters or null.
+         */
+        public final Smooth smooth;
+
+        /**
+         * Absolute position requested via the annotation, or -1 for
+         * automatic (relative) layout.
+         */
+        public final int x, y;
+
+        public final String[] selectedFields;
+        public final boolean isHorizontal;
+
+        Entry(Field field, GUIElement element, Kind kind, String label,
+                GUIElementBuilder builder, Range range, Smooth smooth, int x,
+                int y, String[] selectedFields, boolean isHorizontal) {
+            this.field = field;
+            this.element = element;
+            this.kind = kind;
+            this.label = label;
+            this.builder = builder;
+            this.range = range;
+            this.smooth = smooth;
+            this.x = x;
+            this.y = y;
+            this.selectedFields = selectedFields;
+            this.isHorizontal = isHorizontal;
+        }
+
+        /**
+         * @return true, if the entry's vertical position is computed by the
+         *         panel layout
+         */
+        public boolean isRelative() {
+            return y == -1;
+        }
+    }
+
+    private static final String[] NO_FIELDS = new String[0];
+
+    private static final Map<Class<?>, SoftReference<GUIBindingPlan>> PLANS =
+            new WeakHashMap<Class<?>, SoftReference<GUIBindingPlan>>();
+
+    /**
+     * Returns the (cached) binding plan for the given context class. Plans are
+     * compiled on first request, outside the cache lock, so threads compiling
+     * plans for different classes don't block each other. Plans are
+     * immutable, so if two threads compile the same plan concurrently, the
+     * first one published is used by both.
+     * 
+     * @param type
+     *            context class
+     * @return plan
+     */
+    public static GUIBindingPlan forClass(Class<?> type) {
+        GUIBindingPlan plan = getCachedPlan(type);
+        if (plan == null) {
+            GUIBindingPlan compiled = new GUIBindingPlan(type);
+            synchronized (PLANS) {
+                plan = getCachedPlan(type);
+                if (plan == null) {
+                    plan = compiled;
+                    PLANS.put(type, new SoftReference<GUIBindingPlan>(plan));
+                }
+            }
+        }
+        return plan;
+    }
+
+    private static GUIBindingPlan getCachedPlan(Class<?> type) {
+        synchronized (PLANS) {
+            SoftReference<GUIBindingPlan> ref = PLANS.get(type);
+            return ref != null ? ref.get() : null;
+        }
+    }
+
+    private static String[] tokenizeFieldNames(String fieldNames) {
+        List<String> names = new ArrayList<String>();
+        StringTokenizer st = new StringTokenizer(fieldNames, ",");
+        while (st.hasMoreTokens()) {
+            names.add(st.nextToken());
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    private static GUIBinder lookupBinder(Class<?> type) {
+        if (type.isArray() || type.isPrimitive()) {
+            return null;
+        }
+        String name = type.getName() + GUIBinder.SUFFIX;
+        try {
+            Class<?> c = Class.forName(name, true, type.getClassLoader());
+            return (GUIBinder) c.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (NoSuchMethodException e) {
+            GUIManager.logger.warning("no default constructor in binder: "
+                    + name);
+        } catch (InstantiationException e) {
+            GUIManager.logger.warning("can't create binder: " + name);
+        } catch (InvocationTargetException e) {
+            GUIManager.logger.warning("can't create binder: " + name + ": "
+                    + e.getCause());
+        } catch (IllegalAccessException e) {
+            GUIManager.logger.warning("can't access binder: " + name);
+        } catch (ClassCastException e) {
+            GUIManager.logger.warning("not a GUIBinder: " + name);
+        }
+        return null;
+    }
+
+    private final Class<?> type;
+    private final GUIConfiguration config;
+    private final GUIBinder binder;
+    private final List<Entry> entries;
+    private Map<String, Field> publicFields;
+
+    private GUIBindingPlan(Class<?> type) {
+        this.type = type;
+        this.config = type.getAnnotation(GUIConfiguration.class);
+        this.binder = lookupBinder(type);
+        List<Entry> compiled;
+        if (binder != null) {
+            String[] names = binder.getFieldNames();
+            compiled = new ArrayList<Entry>(names.length);
+            for (String id : names) {
+                try {
+                    Entry e = compileEntry(type.getField(id));
+                    if (e != null) {
+                        compiled.add(e);
+                    }
+                } catch (NoSuchFieldException e) {
+                    GUIManager.logger.warning("stale binder, can't find field: "
+                            + id + " in context: " + type.getName());
+                }
+            }
+            Class<?> parent = type.getSuperclass();
+            if (parent != null && parent != Object.class) {
+                compiled.addAll(forClass(parent).getEntries());
+            }
+        } else {
+            Field[] fields = type.getFields();
+            compiled = new ArrayList<Entry>(fields.length);
+            for (Field f : fields) {
+                Entry e = compileEntry(f);
+                if (e != null) {
+                    compiled.add(e);
+                }
+            }
+        }
+        entries = Collections.unmodifiableList(Arrays.asList(compiled
+                .toArray(new Entry[compiled.size()])));
+    }
+
+    private Entry compileEntry(Field f) {
+        GUIElement a = f.getAnnotation(GUIElement.class);
+        Kind kind;
+        if (f.isAnnotationPresent(GUISubContext.class)) {
+            kind = Kind.SUB_CONTEXT;
+        } else if (f.isAnnotationPresent(GUIFieldSelector.class)) {
+            kind = Kind.FIELD_SELECTOR;
+        } else if (a != null) {
+            kind = Kind.ELEMENT;
+        } else {
+            return null;
+        }
+        makeAccessible(f);
+        String label =
+                a != null && !a.label().equals(GUIElement.NO_LABEL) ? a
+                        .label() : f.getName();
+        GUIElementBuilder builder = null;
+        int x = -1, y = -1;
+        if (a != null) {
+            x = a.x();
+            y = a.y();
+            if (kind == Kind.ELEMENT && a.builder() != GUIElementBuilder.class) {
+                try {
+                    builder = a.builder().getDeclaredConstructor()
+                            .newInstance();
+                } catch (NoSuchMethodException e) {
+                    GUIManager.logger.warning("no default constructor in "
+                            + "builder: " + a.builder().getName()
+                            + " for field: " + f.getName());
+                } catch (InstantiationException e) {
+                    GUIManager.logger.warning("can't create builder: "
+                            + a.builder().getName() + " for field: "
+                            + f.getName());
+                } catch (InvocationTargetException e) {
+                    GUIManager.logger.warning("can't create builder: "
+                            + a.builder().getName() + " for field: "
+                            + f.getName() + ": " + e.getCause());
+                } catch (IllegalAccessException e) {
+                    GUIManager.logger.warning("can't access builder: "
+                            + a.builder().getName() + " for field: "
+                            + f.getName());
+                }
+            }
+        }
+        String[] selected = NO_FIELDS;
+        boolean isHorizontal = true;
+        if (kind == Kind.FIELD_SELECTOR) {
+            GUIFieldSelector sel = f.getAnnotation(GUIFieldSelector.class);
+            selected = tokenizeFieldNames(sel.fields());
+            isHorizontal = sel.horizontal();
+        }
+        return new Entry(f, a, kind, label, builder,
+                f.getAnnotation(Range.class), f.getAnnotation(Smooth.class),
+                x, y, selected, isHorizontal);
+    }
+
+    private static void makeAccessible(Field f) {
+        try {
+            f.setAccessible(true);
+        } catch (SecurityException e) {
+            // fall back to regular access checks
+        }
+    }
+
+    /**
+     * @return generated binder for the context class or null, if there's none
+     */
+    public GUIBinder getBinder() {
+        return binder;
+    }
+
+    /**
+     * @return class level configuration or null, if not present
+     */
+    public GUIConfiguration getConfiguration() {
+        return config;
+    }
+
+    /**
+     * @return immutable list of all compiled field bindings, in declaration
+     *         order
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param name
+     * @return public field with the given name or null, if there's none
+     */
+    public Field getField(String name) {
+        return getPublicFields().get(name);
+    }
+
+    private synchronized Map<String, Field> getPublicFields() {
+        if (publicFields == null) {
+            Field[] fields = type.getFields();
+            publicFields = new HashMap<String, Field>(fields.length * 2);
+            for (Field f : fields) {
+                makeAccessible(f);
+                publicFields.put(f.getName(), f);
+            }
+        }
+        return publicFields;
+    }
+
+    /**
+     * Looks up the public fields with the given names. Unknown names are
+     * logged and skipped.
+     * 
+     * @param names
+     *            field names
+     * @return list of fields
+     */
+    public List<Field> getSelectedFields(String[] names) {
+        Map<String, Field> publicFields = getPublicFields();
+        List<Field> fields = new ArrayList<Field>(names.length);
+        for (String id : names) {
+            Field f = publicFields.get(id);
+            if (f != null) {
+                fields.add(f);
+            } else {
+                GUIManager.logger.warning("can't access/find field: " + id
+                        + " in context: " + type.getName());
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return the context class this plan has been compiled for
+     */
+    public Class<?> getType() {
+        return type;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the controllers and parameters created for a context object by
+ * {@link GUIManager#createControllers(Object, int, int, String)}, so they can
+ * be disposed again via {@link GUIManager#unbind(Object)}. In weak mode, the
+ * context is only weakly referenced and the binding is enqueued once the
+ * context has been collected.
+ * 
+ * Bindings hash by the identity of their context (which stays valid after
+ * the context has been collected), but are only equal to themselves. Use a
+ * {@link Key} to look up the binding of a context in a hash map.
+ */
+final class GUIContextBinding extends WeakReference<Object> {
+
+    /**
+     * Lookup key matching the binding of a context (by identity).
+     */
+    static final class Key {
+
+        private final Object context;
+
+        Key(Object context) {
+            this.context = context;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GUIContextBinding
+                    && ((GUIContextBinding) o).get() == context;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(context);
+        }
+    }
+
+    /**
+     * Strong reference to the context, null in weak mode.
+     */
+    private final Object context;
+
+    private final int hash;
+
+    final List<GUIWidget> widgets;
+    final List<Integer> parameters;
+    final List<GUILayout> layouts;
+
+    GUIContextBinding(Object context, ReferenceQueue<Object> queue) {
+        this(context, queue, new ArrayList<GUIWidget>(),
+                new ArrayList<Integer>(), new ArrayList<GUILayout>());
+    }
+
+    GUIContextBinding(Object context, ReferenceQueue<Object> queue,
+            List<GUIWidget> widgets, List<Integer> parameters,
+            List<GUILayout> layouts) {
+        super(context, queue);
+        this.context = queue == null ? context : null;
+        this.hash = System.identityHashCode(context);
+        this.widgets = widgets;
+        this.parameters = parameters;
+        this.layouts = layouts;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * @return true, if the context is only weakly referenced
+     */
+    boolean isWeak() {
+        return context == null;
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+
+import toxi.geom.Vec2D;
+
+/**
+ * Graph of all context objects reachable from a root context via
+ * {@link GUISubContext} fields, discovered before any controllers are
+ * created. Each object is only inspected once (identity based), so shared
+ * sub-contexts and back-references neither cause duplicate controllers nor
+ * endless recursion: when the graph is added to a {@link GUILayout}, only the
+ * first occurrence of an object (in declaration order) is bound, later ones
+ * are logged and skipped.
+ * 
+ * Objects can be inspected in parallel by an {@link Executor}. Since the
+ * inspection result of an object doesn't depend on the path it has been
+ * reached by, controller IDs and layout are the same as for sequential
+ * discovery.
+ */
+final class GUIContextGraph {
+
+    /**
+     * Inspection result for a single context object.
+     */
+    static final class Node {
+
+        final Object context;
+        final List<Item> items = new ArrayList<Item>();
+
+        // ID of the first occurrence, set while building the layout
+        String path;
+        boolean isOpen;
+
+        Node(Object context) {
+            this.context = context;
+        }
+    }
+
+    /**
+     * A single bound field of a context. Elements only have one cell,
+     * field selectors one cell per selected field and sub-contexts none.
+     */
+    static final class Item {
+
+        final GUIBindingPlan.Entry entry;
+        final Object value;
+        final Field[] fields;
+        final GUIElementBuilder[] builders;
+
+        // width/height pairs
+        final float[] sizes;
+        Node child;
+
+        Item(GUIBindingPlan.Entry entry, Object value, Field[] fields,
+                GUIElementBuilder[] builders, float[] sizes) {
+            this.entry = entry;
+            this.value = value;
+            this.fields = fields;
+            this.builders = builders;
+            this.sizes = sizes;
+        }
+    }
+
+    private static final class Frame {
+
+        final Node node;
+        final String path;
+        final int group;
+        int item;
+
+        Frame(Node node, String path, int group) {
+            this.node = node;
+            this.path = path;
+            this.group = group;
+        }
+    }
+
+    /**
+     * Max number of objects inspected by a single executor task.
+     */
+    static final int BATCH_SIZE = 32;
+
+    private static final Field[] NO_FIELDS = new Field[0];
+
+    private static final GUIElementBuilder[] NO_BUILDERS =
+            new GUIElementBuilder[0];
+
+    private static final float[] NO_SIZES = new float[0];
+
+    private final GUIManager gui;
+    private final Node root;
+    private final IdentityHashMap<Object, Node> nodes =
+            new IdentityHashMap<Object, Node>();
+
+    /**
+     * Discovers all objects reachable from the given context.
+     * 
+     * @param gui
+     * @param context
+     *            root context
+     * @param executor
+     *            executor to inspect objects in parallel or null to inspect
+     *            them on the calling thread
+     * @throws IllegalAccessException
+     */
+    GUIContextGraph(GUIManager gui, Object context, Executor executor)
+            throws IllegalAccessException {
+        this.gui = gui;
+        this.root = new Node(context);
+        nodes.put(context, root);
+        if (executor != null) {
+            discoverParallel(executor);
+        } else {
+            LinkedList<Node> queue = new LinkedList<Node>();
+            queue.add(root);
+            while (!queue.isEmpty()) {
+                Node n = queue.removeFirst();
+                inspect(n);
+                link(n, queue);
+            }
+        }
+    }
+
+    /**
+     * Adds the items of all reachable objects to the layout, in depth first
+     * order.
+     * 
+     * @param layout
+     * @param path
+     *            ID of the root context or null
+     */
+    void addTo(GUILayout layout, String path) {
+        LinkedList<Frame> stack = new LinkedList<Frame>();
+        root.path = path != null ? path : "";
+        root.isOpen = true;
+        stack.addFirst(new Frame(root, path, -1));
+        while (!stack.isEmpty()) {
+            Frame f = stack.getFirst();
+            if (f.item == f.node.items.size()) {
+                stack.removeFirst();
+                f.node.isOpen = false;
+                if (f.group != -1) {
+                    layout.end(f.group);
+                }
+                continue;
+            }
+            Item item = f.node.items.get(f.item++);
+            GUIBindingPlan.Entry e = item.entry;
+            String id = GUIManager.getChildID(f.path, e.field.getName());
+            switch (e.kind) {
+                case SUB_CONTEXT:
+                    Node child = item.child;
+                    if (child.path != null) {
+                        GUIManager.logger.warning("skipping "
+                                + (child.isOpen ? "cyclic" : "shared")
+                                + " sub-context: " + id + ", already bound as: "
+                                + (child.path.length() > 0 ? child.path
+                                        : "<root>"));
+                        break;
+                    }
+                    child.path = id;
+                    child.isOpen = true;
+                    stack.addFirst(new Frame(child, id, layout
+                            .begin(GUILayout.GROUP)));
+                    break;
+                case FIELD_SELECTOR:
+                    int row =
+                            layout.begin(e.isHorizontal ? GUILayout.ROW
+                                    : GUILayout.GROUP);
+                    for (int i = 0; i < item.fields.length; i++) {
+                        String name = item.fields[i].getName();
+                        layout.add(item.value, item.fields[i],
+                                item.builders[i], GUIManager.getChildID(id,
+                                        name), e.label + " (" + name + ")",
+                                null, item.sizes[i * 2],
+                                item.sizes[i * 2 + 1], -1, -1);
+                    }
+                    layout.end(row);
+                    break;
+                default:
+                    layout.add(f.node.context, e.field, item.builders[0], id,
+                            e.label, e.smooth, item.sizes[0], item.sizes[1],
+                            e.x, e.y);
+            }
+        }
+    }
+
+    private void discoverParallel(Executor executor)
+            throws IllegalAccessException {
+        CompletionService<List<Node>> tasks =
+                new ExecutorCompletionService<List<Node>>(executor);
+        LinkedList<Node> frontier = new LinkedList<Node>();
+        frontier.add(root);
+        int numPending = 0;
+        try {
+            while (true) {
+                while (!frontier.isEmpty()) {
+                    int n = Math.min(frontier.size(), BATCH_SIZE);
+                    final List<Node> batch = new ArrayList<Node>(n);
+                    for (int i = 0; i < n; i++) {
+                        batch.add(frontier.removeFirst());
+                    }
+                    tasks.submit(new Callable<List<Node>>() {
+
+                        public List<Node> call() throws Exception {
+                            for (Node node : batch) {
+                                inspect(node);
+                            }
+                            return batch;
+                        }
+                    });
+                    numPending++;
+                }
+                if (numPending == 0) {
+                    break;
+                }
+                List<Node> batch = tasks.take().get();
+                numPending--;
+                for (Node node : batch) {
+                    link(node, frontier);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted during discovery", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalAccessException) {
+                throw (IllegalAccessException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @return number of distinct context objects found
+     */
+    int getNumContexts() {
+        return nodes.size();
+    }
+
+    /**
+     * Reads all bound fields of the node's context, resolves and measures
+     * their builders. Doesn't touch the graph, so it's safe to call from
+     * any thread.
+     */
+    private void inspect(Node node) throws IllegalAccessException {
+        Object context = node.context;
+        GUIBindingPlan plan = GUIBindingPlan.forClass(context.getClass());
+        for (GUIBindingPlan.Entry e : plan.getEntries()) {
+            Object value = e.field.get(context);
+            if (value == null) {
+                GUIManager.logger.warning("skipping null field: "
+                        + e.field.getName() + " in context: "
+                        + plan.getType().getName());
+                continue;
+            }
+            switch (e.kind) {
+                case SUB_CONTEXT:
+                    node.items.add(new Item(e, value, NO_FIELDS, NO_BUILDERS,
+                            NO_SIZES));
+                    break;
+                case FIELD_SELECTOR:
+                    node.items.add(inspectSelector(e, value));
+                    break;
+                default:
+                    GUIElementBuilder builder =
+                            e.builder != null ? e.builder : gui
+                                    .getMappingForType(value.getClass());
+                    if (builder != null) {
+                        Vec2D size = gui.measure(builder, value);
+                        node.items.add(new Item(e, value, new Field[] {
+                            e.field
+                        }, new GUIElementBuilder[] {
+                            builder
+                        }, new float[] {
+                                size.x, size.y
+                        }));
+                    }
+            }
+        }
+    }
+
+    private Item inspectSelector(GUIBindingPlan.Entry e, Object value)
+            throws IllegalAccessException {
+        List<Field> selected =
+                GUIBindingPlan.forClass(value.getClass()).getSelectedFields(
+                        e.selectedFields);
+        int num = selected.size();
+        Field[] fields = new Field[num];
+        GUIElementBuilder[] builders = new GUIElementBuilder[num];
+        float[] sizes = new float[num * 2];
+        int n = 0;
+        for (Field f : selected) {
+            Object v = f.get(value);
+            GUIElementBuilder builder =
+                    v != null ? gui.getMappingForType(v.getClass()) : null;
+            if (builder != null) {
+                Vec2D size = gui.measure(builder, v);
+                fields[n] = f;
+                builders[n] = builder;
+                sizes[n * 2] = size.x;
+                sizes[n * 2 + 1] = size.y;
+                n++;
+            }
+        }
+        if (n < num) {
+            Field[] f = new Field[n];
+            GUIElementBuilder[] b = new GUIElementBuilder[n];
+            float[] sz = new float[n * 2];
+            System.arraycopy(fields, 0, f, 0, n);
+            System.arraycopy(builders, 0, b, 0, n);
+            System.arraycopy(sizes, 0, sz, 0, n * 2);
+            fields = f;
+            builders = b;
+            sizes = sz;
+        }
+        return new Item(e, value, fields, builders, sizes);
+    }
+
+    /**
+     * Resolves the sub-contexts of an inspected node, creating nodes for all
+     * objects not seen before.
+     * 
+     * @param node
+     * @param discovered
+     *            receives all new nodes
+     */
+    private void link(Node node, List<Node> discovered) {
+        for (Item item : node.items) {
+            if (item.entry.kind == GUIBindingPlan.Kind.SUB_CONTEXT) {
+                Node child = nodes.get(item.value);
+                if (child == null) {
+                    child = new Node(item.value);
+                    nodes.put(item.value, child);
+                    discovered.add(child);
+                }
+                item.child = child;
+            }
+        }
+    }
+}
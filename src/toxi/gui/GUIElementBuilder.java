@@ -25,7 +25,6 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import toxi.geom.Vec2D;
-import controlP5.Controller;
 
 public interface GUIElementBuilder {
 
@@ -37,7 +36,8 @@ public interface GUIElementBuilder {
      *            the instance the variable to be controlled is belonging to
      * @param field
      *            reference to the actual variable field within the context
-     *            object
+     *            object (use {@link GUIManager#getAccessorFor(Field)} to
+     *            read/write its value)
      * @param pos
      *            screen position for the controller
      * @param id
@@ -45,12 +45,13 @@ public interface GUIElementBuilder {
      * @param label
      *            controller label
      * @param gui
-     *            GUIManager instance
-     * @return
+     *            GUIManager instance (use {@link GUIManager#getBackend()} to
+     *            create controllers)
+     * @return list of created controllers
      * @throws IllegalArgumentException
      * @throws IllegalAccessException
      */
-    public List<Controller> createElementsFor(final Object context,
+    public List<GUIWidget> createElementsFor(final Object context,
             final Field field, Vec2D pos, String id, String label,
             GUIManager gui) throws IllegalArgumentException,
             IllegalAccessException;
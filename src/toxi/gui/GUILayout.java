@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * Column-oriented layout of all elements created by a single call to
+ * {@link GUIManager#createControllers(Object, int, int, String, String)}.
+ * Elements are first collected and measured, then positioned in a single
+ * pass via {@link #layout()} and only then are their controllers created.
+ * 
+ * Relative elements are stacked vertically and wrap into a new column when
+ * exceeding the panel height (if set). Elements of a sub-context are kept in
+ * the same column, if they fit, and horizontal field selectors form rows.
+ * Elements with an absolute position given via {@link GUIElement} are not
+ * part of the flow. The created controllers are remembered together with
+ * their offsets, so that {@link #relayout(float)} can move them without
+ * recreating them.
+ */
+public class GUILayout {
+
+    /**
+     * Single element (incl. the cells of a row).
+     */
+    public static final int ELEMENT = 0;
+
+    /**
+     * Horizontal row of elements.
+     */
+    public static final int ROW = 1;
+
+    /**
+     * Elements of a sub-context, kept together if possible.
+     */
+    public static final int GROUP = 2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    protected final float originX, originY;
+    protected float height;
+
+    protected int size;
+    protected int[] kinds = new int[INITIAL_CAPACITY];
+
+    // index after the last child of containers, i + 1 for elements
+    protected int[] ends = new int[INITIAL_CAPACITY];
+    protected float[] widths = new float[INITIAL_CAPACITY];
+    protected float[] heights = new float[INITIAL_CAPACITY];
+
+    // absolute position requested for elements or -1
+    protected float[] fixedX = new float[INITIAL_CAPACITY];
+    protected float[] fixedY = new float[INITIAL_CAPACITY];
+
+    protected float[] x = new float[INITIAL_CAPACITY];
+    protected float[] y = new float[INITIAL_CAPACITY];
+
+    // creation parameters, released once controllers have been created
+    Object[] contexts = new Object[INITIAL_CAPACITY];
+    Field[] fields = new Field[INITIAL_CAPACITY];
+    GUIElementBuilder[] builders = new GUIElementBuilder[INITIAL_CAPACITY];
+    String[] ids = new String[INITIAL_CAPACITY];
+    String[] labels = new String[INITIAL_CAPACITY];
+    Smooth[] smooths = new Smooth[INITIAL_CAPACITY];
+
+    protected int numWidgets;
+    protected GUIWidget[] widgets = new GUIWidget[INITIAL_CAPACITY];
+    protected int[] widgetItems = new int[INITIAL_CAPACITY];
+    protected float[] offsetX = new float[INITIAL_CAPACITY];
+    protected float[] offsetY = new float[INITIAL_CAPACITY];
+
+    /**
+     * @param x
+     *            panel origin
+     * @param y
+     * @param height
+     *            panel height or 0 to never wrap into a new column
+     */
+    public GUILayout(float x, float y, float height) {
+        this.originX = x;
+        this.originY = y;
+        this.height = height;
+    }
+
+    /**
+     * Adds an element.
+     * 
+     * @param context
+     * @param field
+     * @param builder
+     * @param id
+     * @param label
+     * @param smooth
+     *            smoothing to apply to the element's parameters or null
+     * @param width
+     * @param height
+     * @param fx
+     *            absolute x position or -1
+     * @param fy
+     *            absolute y position or -1 for relative layout
+     * @return item index
+     */
+    int add(Object context, Field field, GUIElementBuilder builder, String id,
+            String label, Smooth smooth, float width, float height, float fx,
+            float fy) {
+        int i = addItem(ELEMENT);
+        contexts[i] = context;
+        fields[i] = field;
+        builders[i] = builder;
+        ids[i] = id;
+        labels[i] = label;
+        smooths[i] = smooth;
+        widths[i] = width;
+        heights[i] = height;
+        fixedX[i] = fx;
+        fixedY[i] = fy;
+        ends[i] = i + 1;
+        return i;
+    }
+
+    private int addItem(int kind) {
+        if (size == kinds.length) {
+            int cap = size * 2;
+            kinds = GUIParameterTable.grow(kinds, cap);
+            ends = GUIParameterTable.grow(ends, cap);
+            widths = GUIParameterTable.grow(widths, cap);
+            heights = GUIParameterTable.grow(heights, cap);
+            fixedX = GUIParameterTable.grow(fixedX, cap);
+            fixedY = GUIParameterTable.grow(fixedY, cap);
+            x = GUIParameterTable.grow(x, cap);
+            y = GUIParameterTable.grow(y, cap);
+            contexts = GUIParameterTable.grow(contexts, cap);
+            fields = GUIParameterTable.grow(fields, cap);
+            builders = GUIParameterTable.grow(builders, cap);
+            ids = GUIParameterTable.grow(ids, cap);
+            labels = GUIParameterTable.grow(labels, cap);
+            smooths = GUIParameterTable.grow(smooths, cap);
+        }
+        kinds[size] = kind;
+        fixedX[size] = -1;
+        fixedY[size] = -1;
+        return size++;
+    }
+
+    /**
+     * Remembers the controllers created for an element and their offsets
+     * relative to the element's position.
+     * 
+     * @param item
+     * @param items
+     */
+    void addWidgets(int item, List<GUIWidget> items) {
+        for (GUIWidget w : items) {
+            if (numWidgets == widgets.length) {
+                int cap = numWidgets * 2;
+                widgets = GUIParameterTable.grow(widgets, cap);
+                widgetItems = GUIParameterTable.grow(widgetItems, cap);
+                offsetX = GUIParameterTable.grow(offsetX, cap);
+                offsetY = GUIParameterTable.grow(offsetY, cap);
+            }
+            widgets[numWidgets] = w;
+            widgetItems[numWidgets] = item;
+            offsetX[numWidgets] = w.getX() - x[item];
+            offsetY[numWidgets] = w.getY() - y[item];
+            numWidgets++;
+        }
+    }
+
+    /**
+     * Starts a new container. All items added until the matching call to
+     * {@link #end(int)} are its children.
+     * 
+     * @param kind
+     *            {@link #ROW} or {@link #GROUP}
+     * @return item index
+     */
+    int begin(int kind) {
+        return addItem(kind);
+    }
+
+    /**
+     * Releases all references needed for creating the controllers.
+     */
+    void clearCreationState() {
+        for (int i = 0; i < size; i++) {
+            contexts[i] = null;
+            fields[i] = null;
+            builders[i] = null;
+            ids[i] = null;
+            labels[i] = null;
+            smooths[i] = null;
+        }
+    }
+
+    /**
+     * Closes the container and computes its size from its direct children:
+     * rows are as wide as all their cells, groups as high as all their
+     * relative children.
+     * 
+     * @param i
+     *            container index
+     */
+    void end(int i) {
+        ends[i] = size;
+        float w = 0, h = 0;
+        boolean isRow = kinds[i] == ROW;
+        for (int j = i + 1; j < size; j = ends[j]) {
+            if (fixedY[j] != -1) {
+                continue;
+            }
+            if (isRow) {
+                w += widths[j];
+                h = Math.max(h, heights[j]);
+            } else {
+                w = Math.max(w, widths[j]);
+                h += heights[j];
+            }
+        }
+        widths[i] = w;
+        heights[i] = h;
+    }
+
+    /**
+     * @return panel height or 0, if columns never wrap
+     */
+    public float getHeight() {
+        return height;
+    }
+
+    public int getNumWidgets() {
+        return numWidgets;
+    }
+
+    /**
+     * @param i
+     *            item index
+     * @return computed x position
+     */
+    public float getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * @param i
+     *            item index
+     * @return computed y position
+     */
+    public float getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * Computes the positions of all items in a single pass.
+     */
+    public void layout() {
+        float maxY = height > 0 ? originY + height : Float.MAX_VALUE;
+        float cx = originX, cy = originY, colWidth = 0;
+        int i = 0;
+        while (i < size) {
+            float h = heights[i];
+            if (fixedY[i] != -1) {
+                x[i] = fixedX[i] != -1 ? fixedX[i] : cx;
+                y[i] = fixedY[i];
+                i++;
+                continue;
+            }
+            boolean isGroup = kinds[i] == GROUP;
+            if (cy + h > maxY && cy > originY
+                    && (!isGroup || h <= height)) {
+                cx += colWidth;
+                cy = originY;
+                colWidth = 0;
+            }
+            x[i] = fixedX[i] != -1 ? fixedX[i] : cx;
+            y[i] = cy;
+            if (isGroup) {
+                // children are placed individually
+                i++;
+                continue;
+            }
+            if (kinds[i] == ROW) {
+                float rx = cx;
+                for (int j = i + 1, end = ends[i]; j < end; j++) {
+                    x[j] = rx;
+                    y[j] = cy;
+                    rx += widths[j];
+                }
+            }
+            cy += h;
+            colWidth = Math.max(colWidth, widths[i]);
+            i = ends[i];
+        }
+    }
+
+    /**
+     * Recomputes the layout for a new panel height and moves all created
+     * controllers accordingly.
+     * 
+     * @param height
+     *            panel height or 0 to never wrap
+     */
+    public void relayout(float height) {
+        this.height = height;
+        layout();
+        for (int j = 0; j < numWidgets; j++) {
+            int i = widgetItems[j];
+            widgets[j].setPosition(x[i] + offsetX[j], y[i] + offsetY[j]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+}
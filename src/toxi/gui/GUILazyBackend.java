@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link GUIBackend} decorator for very large panels. Instead of creating
+ * widgets right away, it only returns {@link GUILazyWidget} placeholders
+ * recording their layout and state. The actual widgets of the wrapped backend
+ * are created once their tab becomes active (and, if a viewport has been
+ * set, once they're within the visible region). Optionally, widgets which
+ * haven't been displayed for a given number of frames are released again.
+ * 
+ * Visibility is checked in {@link #update(int)}, which is called from
+ * {@link GUIManager#pre()} once lazy mode has been enabled via
+ * {@link GUIManager#setLazyEnabled(boolean)}. Tab switches therefore take
+ * effect at the beginning of the next frame.
+ */
+public class GUILazyBackend implements GUIBackend {
+
+    /**
+     * Number of frames between checks for widgets to be released.
+     */
+    public static final int RELEASE_INTERVAL = 60;
+
+    protected final GUIBackend delegate;
+
+    private final List<GUILazyWidget> widgets = new ArrayList<GUILazyWidget>();
+
+    private String activeTab;
+    private int frame;
+    private int nextRelease;
+    private int releaseDelay = -1;
+    private boolean isInvalid;
+
+    private boolean hasViewport;
+    private float viewX1, viewY1, viewX2, viewY2;
+
+    int numMaterialized;
+
+    public GUILazyBackend(GUIBackend delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Removes the current viewport restriction, so that all widgets in the
+     * active tab are being displayed.
+     */
+    public void clearViewport() {
+        hasViewport = false;
+        isInvalid = true;
+    }
+
+    public GUIWidget createButton(String id, float value, int x, int y,
+            int width, int height) {
+        return register(new GUILazyWidget(this, GUILazyWidget.Kind.BUTTON,
+                id, value, value, value, null, x, y, width, height));
+    }
+
+    public GUIWidget createRadio(String id, String[] items, int x, int y) {
+        return register(new GUILazyWidget(this, GUILazyWidget.Kind.RADIO, id,
+                -1, -1, items.length - 1, items.clone(), x, y, 100,
+                items.length * 16));
+    }
+
+    public GUIWidget createSlider(String id, float min, float max, float value,
+            int x, int y, int width, int height) {
+        return register(new GUILazyWidget(this, GUILazyWidget.Kind.SLIDER,
+                id, value, min, max, null, x, y, width, height));
+    }
+
+    public GUIWidget createToggle(String id, boolean state, int x, int y,
+            int width, int height) {
+        return register(new GUILazyWidget(this, GUILazyWidget.Kind.TOGGLE,
+                id, state ? 1 : 0, 0, 1, null, x, y, width, height));
+    }
+
+    public String getActiveTab() {
+        return delegate.getActiveTab();
+    }
+
+    /**
+     * @return wrapped backend creating the actual widgets
+     */
+    public GUIBackend getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return frame number passed to the most recent {@link #update(int)}
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return number of placeholders whose actual widget currently exists
+     */
+    public int getNumMaterialized() {
+        return numMaterialized;
+    }
+
+    /**
+     * @return number of frames a widget needs to be hidden for before it's
+     *         released, or -1 if widgets are never released
+     */
+    public int getReleaseDelay() {
+        return releaseDelay;
+    }
+
+    /**
+     * @return all placeholders, in creation order unless some have been
+     *         removed (removal moves the last placeholder into the gap)
+     */
+    public List<GUILazyWidget> getWidgets() {
+        return widgets;
+    }
+
+    /**
+     * Forces a visibility check during the next {@link #update(int)}.
+     */
+    void invalidate() {
+        isInvalid = true;
+    }
+
+    /**
+     * @param w
+     * @return true, if the widget is in the active tab, visible and within
+     *         the viewport (if any)
+     */
+    protected boolean isShown(GUILazyWidget w) {
+        if (!w.isVisible || !w.tab.equals(activeTab)) {
+            return false;
+        }
+        if (!hasViewport) {
+            return true;
+        }
+        return w.x >= viewX1 && w.x <= viewX2 && w.y >= viewY1
+                && w.y <= viewY2;
+    }
+
+    /**
+     * Creates the actual widgets of all placeholders.
+     */
+    public void materializeAll() {
+        for (int i = 0, num = widgets.size(); i < num; i++) {
+            widgets.get(i).materialize();
+        }
+    }
+
+    /**
+     * Creates the actual widgets of all placeholders in the given tab, e.g.
+     * to prepare a tab before switching to it.
+     * 
+     * @param tab
+     * @return number of newly created widgets
+     */
+    public int materializeTab(String tab) {
+        int count = 0;
+        for (int i = 0, num = widgets.size(); i < num; i++) {
+            GUILazyWidget w = widgets.get(i);
+            if (!w.isMaterialized() && w.tab.equals(tab)) {
+                w.materialize();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private GUIWidget register(GUILazyWidget w) {
+        w.position = widgets.size();
+        widgets.add(w);
+        isInvalid = true;
+        return w;
+    }
+
+    public boolean registerPreHook(GUIManager manager) {
+        return delegate.registerPreHook(manager);
+    }
+
+    /**
+     * Releases the actual widgets of all placeholders not displayed for more
+     * than the given number of frames. Pinned widgets are never released.
+     * 
+     * @param maxAge
+     *            number of frames
+     * @return number of released widgets
+     */
+    public int releaseHidden(int maxAge) {
+        int count = 0;
+        for (int i = 0, num = widgets.size(); i < num; i++) {
+            GUILazyWidget w = widgets.get(i);
+            if (w.isMaterialized()) {
+                if (isShown(w)) {
+                    w.lastShown = frame;
+                } else if (frame - w.lastShown > maxAge && w.release()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    void remove(GUILazyWidget w) {
+        int i = w.position;
+        if (i < 0) {
+            return;
+        }
+        GUILazyWidget last = widgets.remove(widgets.size() - 1);
+        if (last != w) {
+            widgets.set(i, last);
+            last.position = i;
+        }
+        w.position = -1;
+    }
+
+    /**
+     * Sets the number of frames a widget needs to be hidden for before its
+     * actual widget is released again. Hidden widgets are checked every
+     * {@link #RELEASE_INTERVAL} frames.
+     * 
+     * @param frames
+     *            delay or -1 to never release widgets (default)
+     */
+    public void setReleaseDelay(int frames) {
+        releaseDelay = frames;
+    }
+
+    /**
+     * Restricts displayed widgets to the given region, e.g. the visible part
+     * of a scrolled panel. Only widgets whose position is within the region
+     * are materialized.
+     * 
+     * @param x1
+     * @param y1
+     * @param x2
+     * @param y2
+     */
+    public void setViewport(float x1, float y1, float x2, float y2) {
+        viewX1 = x1;
+        viewY1 = y1;
+        viewX2 = x2;
+        viewY2 = y2;
+        hasViewport = true;
+        isInvalid = true;
+    }
+
+    /**
+     * Per-frame update: materializes all widgets becoming visible after a tab
+     * switch, viewport or layout change and periodically releases hidden
+     * ones (if enabled).
+     * 
+     * @param frame
+     *            current frame number
+     */
+    public void update(int frame) {
+        this.frame = frame;
+        String tab = delegate.getActiveTab();
+        if (isInvalid || !tab.equals(activeTab)) {
+            activeTab = tab;
+            isInvalid = false;
+            for (int i = 0, num = widgets.size(); i < num; i++) {
+                GUILazyWidget w = widgets.get(i);
+                if (!w.isMaterialized() && isShown(w)) {
+                    w.materialize();
+                }
+            }
+        }
+        if (releaseDelay >= 0 && frame >= nextRelease) {
+            releaseHidden(releaseDelay);
+            nextRelease = frame + RELEASE_INTERVAL;
+        }
+    }
+}
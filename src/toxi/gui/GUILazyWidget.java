@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Placeholder widget created by a {@link GUILazyBackend}. It records the
+ * creation parameters and state of a widget and only creates the actual
+ * widget of the underlying backend once it needs to be displayed. Values,
+ * labels and listeners are kept by the placeholder, so the real widget can be
+ * released and recreated at any time without listeners noticing.
+ */
+public class GUILazyWidget implements GUIWidget {
+
+    enum Kind {
+        BUTTON, RADIO, SLIDER, TOGGLE
+    }
+
+    private final GUILazyBackend backend;
+    private final Kind kind;
+    private final String id;
+    private final float min, max;
+    private final String[] items;
+    private final int width, height;
+
+    protected float value;
+    protected float x, y;
+    protected String label;
+    protected String valueLabel;
+    protected String tab = "default";
+    protected boolean isVisible = true;
+    protected boolean isPinned;
+    protected boolean isRemoved;
+
+    /**
+     * Frame number when the widget was last found to be displayed.
+     */
+    protected int lastShown;
+
+    // index in the backend's list of placeholders or -1, if removed
+    int position = -1;
+
+    private GUIWidget widget;
+
+    private final List<GUIWidgetListener> listeners =
+            new ArrayList<GUIWidgetListener>(1);
+
+    private final GUIWidgetListener forwarder = new GUIWidgetListener() {
+
+        public void widgetChanged(GUIWidget w, float v) {
+            value = v;
+            notifyListeners(v);
+        }
+    };
+
+    GUILazyWidget(GUILazyBackend backend, Kind kind, String id, float value,
+            float min, float max, String[] items, float x, float y,
+            int width, int height) {
+        this.backend = backend;
+        this.kind = kind;
+        this.id = id;
+        this.value = value;
+        this.min = min;
+        this.max = max;
+        this.items = items;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    public void addListener(GUIWidgetListener listener) {
+        listeners.add(listener);
+    }
+
+    public void changeValue(float value) {
+        if (widget != null) {
+            widget.changeValue(value);
+        } else {
+            setValue(value);
+            notifyListeners(this.value);
+        }
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    public String getTab() {
+        return tab;
+    }
+
+    public float getValue() {
+        return widget != null ? widget.getValue() : value;
+    }
+
+    /**
+     * @return the actual widget or null, if not materialized
+     */
+    public GUIWidget getWidget() {
+        return widget;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    /**
+     * @return true, if the actual widget currently exists
+     */
+    public boolean isMaterialized() {
+        return widget != null;
+    }
+
+    /**
+     * @return true, if the widget will never be released
+     */
+    public boolean isPinned() {
+        return isPinned;
+    }
+
+    public boolean isVisible() {
+        return isVisible;
+    }
+
+    /**
+     * Creates the actual widget, if it doesn't exist yet, and applies all
+     * recorded state to it.
+     * 
+     * @return actual widget or null, if the placeholder has been removed
+     */
+    public GUIWidget materialize() {
+        if (widget == null && !isRemoved) {
+            GUIBackend b = backend.getDelegate();
+            int ix = (int) x;
+            int iy = (int) y;
+            GUIWidget w;
+            switch (kind) {
+                case BUTTON:
+                    w = b.createButton(id, value, ix, iy, width, height);
+                    break;
+                case RADIO:
+                    w = b.createRadio(id, items, ix, iy);
+                    if (w.getValue() != value) {
+                        w.setValue(value);
+                    }
+                    break;
+                case SLIDER:
+                    w = b.createSlider(id, min, max, value, ix, iy, width,
+                            height);
+                    break;
+                default:
+                    w = b.createToggle(id, value != 0, ix, iy, width, height);
+            }
+            if (label != null) {
+                w.setLabel(label);
+            }
+            if (valueLabel != null) {
+                w.setValueLabel(valueLabel);
+            }
+            w.setTab(tab);
+            if (!isVisible) {
+                w.setVisible(false);
+            }
+            w.addListener(forwarder);
+            widget = w;
+            lastShown = backend.getFrame();
+            backend.numMaterialized++;
+        }
+        return widget;
+    }
+
+    private void notifyListeners(float v) {
+        for (int i = 0, num = listeners.size(); i < num; i++) {
+            listeners.get(i).widgetChanged(this, v);
+        }
+    }
+
+    /**
+     * Materializes the widget and excludes it from being released again.
+     * Used when the actual widget is handed out, e.g. via
+     * {@link GUIManager#getBackendWidget(String)}.
+     * 
+     * @return actual widget
+     */
+    public GUIWidget pin() {
+        isPinned = true;
+        return materialize();
+    }
+
+    /**
+     * Removes the actual widget (if any and not pinned) from the underlying
+     * backend. Its current value is retained.
+     * 
+     * @return true, if released
+     */
+    public boolean release() {
+        if (widget == null || isPinned) {
+            return false;
+        }
+        value = widget.getValue();
+        widget.remove();
+        widget = null;
+        backend.numMaterialized--;
+        return true;
+    }
+
+    public void remove() {
+        isPinned = false;
+        release();
+        isRemoved = true;
+        backend.remove(this);
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+        if (widget != null) {
+            widget.setLabel(label);
+        }
+    }
+
+    public void setPosition(float x, float y) {
+        this.x = x;
+        this.y = y;
+        if (widget != null) {
+            widget.setPosition(x, y);
+        }
+        backend.invalidate();
+    }
+
+    public void setTab(String tab) {
+        this.tab = tab;
+        if (widget != null) {
+            widget.setTab(tab);
+        }
+        backend.invalidate();
+    }
+
+    public void setValue(float value) {
+        if (kind == Kind.SLIDER) {
+            value = value < min ? min : value > max ? max : value;
+        }
+        this.value = value;
+        if (widget != null) {
+            widget.setValue(value);
+        }
+    }
+
+    public void setValueLabel(String label) {
+        this.valueLabel = label;
+        if (widget != null) {
+            widget.setValueLabel(label);
+        }
+    }
+
+    public void setVisible(boolean state) {
+        isVisible = state;
+        if (widget != null) {
+            widget.setVisible(state);
+        }
+        backend.invalidate();
+    }
+
+    @Override
+    public String toString() {
+        return id + ": " + getValue() + (widget != null ? "" : " (lazy)");
+    }
+}
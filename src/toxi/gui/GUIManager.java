@@ -20,30 +20,100 @@
 
 package toxi.gui;
 
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 import java.util.StringTokenizer;
-import java.util.UUID;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import toxi.geom.Vec2D;
 import toxi.util.datatypes.FloatRange;
 import toxi.util.datatypes.IntegerRange;
-import controlP5.ControlEvent;
-import controlP5.ControlListener;
-import controlP5.ControlP5;
-import controlP5.Controller;
 
+/**
+ * Creates and manages controllers for the annotated fields of context
+ * objects and binds them to their {@link GUIParameter}s.
+ * 
+ * <h3>Threading</h3>
+ * A manager is owned by the animation thread, i.e. the thread calling
+ * {@link #pre()} (once pre() has been called, else any thread). Only the
+ * following are safe to use from any other thread:
+ * <ul>
+ * <li>lookups: {@link #getWidget(String)}, {@link #getWidgets(String)},
+ * {@link #getParameter(String)}, {@link #getMappingForType(Class)},
+ * {@link #snapshot()}</li>
+ * <li>{@link #addMapping(Class, GUIElementBuilder)}</li>
+ * <li>writes via {@link GUIParameter#set(float)}, which are staged if the
+ * manager is frame synchronized</li>
+ * <li>the group operations {@link #setTab(String, String)},
+ * {@link #setValue(String, float)} and {@link #setVisible(String, boolean)},
+ * which are automatically marshalled onto the animation thread</li>
+ * <li>{@link #invokeLater(Runnable)}, to run any other code (e.g. changes to
+ * widgets, {@link #createControllers(Object)} or {@link #unbind(Object)}) on
+ * the animation thread at the beginning of the next frame</li>
+ * </ul>
+ * Widgets themselves are not thread-safe and must only be modified on the
+ * animation thread.
+ */
 public class GUIManager {
 
     public static final Logger logger = Logger.getLogger(GUIManager.class
             .getName());
 
+    // marks types without mapping in the cache of resolved builders
+    private static final GUIElementBuilder NO_MAPPING =
+            new GUIElementBuilder() {
+
+                public List<GUIWidget> createElementsFor(Object context,
+                        Field field, Vec2D pos, String id, String label,
+                        GUIManager gui) {
+                    return null;
+                }
+
+                public Vec2D getMinSpacing() {
+                    return null;
+                }
+            };
+
+    /**
+     * Separator used in hierarchical controller IDs, e.g.
+     * <code>dummy.pos.x</code>.
+     */
+    public static final char PATH_SEPARATOR = '.';
+
+    // max time step (in seconds) used for smoothing, e.g. after a pause
+    private static final float MAX_SMOOTHING_STEP = 0.1f;
+
+    /**
+     * @param path
+     *            ID of the parent, may be null or empty
+     * @param name
+     * @return hierarchical ID of the child with the given name
+     */
+    public static String getChildID(String path, String name) {
+        if (path == null || path.length() == 0) {
+            return name;
+        }
+        return path + PATH_SEPARATOR + name;
+    }
+
     /**
      * Attempts to retrieve {@link Field} references from the given context
      * object and a list of comma-separated field names.
@@ -71,21 +141,95 @@ public class GUIManager {
         return fields;
     }
 
-    private ControlP5 gui;
-    private Vec2D currPos;
+    private GUIBackend backend;
+
+    private int panelHeight;
+
+    private volatile Executor discoveryExecutor;
 
-    private HashMap<String, Controller> controllers =
-            new HashMap<String, Controller>();
+    // measured once per builder, see measure()
+    private final ConcurrentHashMap<GUIElementBuilder, Vec2D> spacings =
+            new ConcurrentHashMap<GUIElementBuilder, Vec2D>();
 
-    private HashMap<Class<?>, GUIElementBuilder> builders =
+    private final ConcurrentHashMap<String, GUIWidget> controllers =
+            new ConcurrentHashMap<String, GUIWidget>();
+
+    // sorted view of the controllers for subtree queries, guarded by itself
+    private final TreeMap<String, GUIWidget> controllerIndex =
+            new TreeMap<String, GUIWidget>();
+
+    // copy-on-write, replaced by addMapping()
+    private volatile Map<Class<?>, GUIElementBuilder> builders =
             new HashMap<Class<?>, GUIElementBuilder>();
 
-    public GUIManager(ControlP5 gui) {
-        this(gui, true);
-    }
+    private volatile Map<Class<?>, GUIElementBuilder> resolvedBuilders =
+            new ConcurrentHashMap<Class<?>, GUIElementBuilder>();
+
+    private final ConcurrentHashMap<Field, FieldAccessor> accessors =
+            new ConcurrentHashMap<Field, FieldAccessor>();
+
+    private FieldAccessorFactory accessorFactory =
+            ReflectionFieldAccessor.FACTORY;
+
+    private GUIParameterTable parameters = new GUIParameterTable(this);
 
-    public GUIManager(ControlP5 gui, boolean useDefaults) {
-        this.gui = gui;
+    private final ConcurrentHashMap<String, GUIParameter> parameterIDs =
+            new ConcurrentHashMap<String, GUIParameter>();
+
+    private final ConcurrentLinkedQueue<Runnable> tasks =
+            new ConcurrentLinkedQueue<Runnable>();
+
+    private volatile Thread animationThread;
+
+    private boolean isPreRegistered;
+
+    private boolean isPublishingSnapshots;
+
+    private boolean isAutoSyncEnabled;
+
+    private volatile int frameCount;
+
+    private long lastFrameTime;
+
+    private GUIMetrics metrics;
+
+    private boolean isMetricsEnabled;
+
+    private GUILazyBackend lazyBackend;
+
+    private volatile GUIRemoteEndpoint remoteEndpoint;
+
+    // bindings of all contexts (keys & values), see GUIContextBinding.Key
+    private final Map<Object, GUIContextBinding> bindings =
+            new HashMap<Object, GUIContextBinding>();
+
+    private final ReferenceQueue<Object> staleContexts =
+            new ReferenceQueue<Object>();
+
+    private GUIContextBinding currBinding;
+
+    // smoothing of the element currently being created, see bindParameter()
+    private Smooth currSmooth;
+
+    private int numWeakBindings;
+
+    private boolean isWeakContextsEnabled;
+
+    private final AtomicReference<GUIParameterSnapshot> snapshot =
+            new AtomicReference<GUIParameterSnapshot>(
+                    GUIParameterSnapshot.EMPTY);
+
+    /**
+     * Creates a manager using the given widget backend, e.g. a
+     * {@link HeadlessBackend} to use bindings without a display. For
+     * ControlP5, use a {@link ControlP5GUIManager} instead.
+     * 
+     * @param backend
+     * @param useDefaults
+     *            true, to add the default type mappings
+     */
+    public GUIManager(GUIBackend backend, boolean useDefaults) {
+        this.backend = backend;
         if (useDefaults) {
             addDefaultMappings();
         }
@@ -99,38 +243,131 @@ public class GUIManager {
         addMapping(String.class, new ButtonBuilder());
         addMapping(FloatRange.class, new FloatRangeMinMaxBuilder());
         addMapping(IntegerRange.class, new IntRangeMinMaxBuilder());
+        ArrayBuilder arrays = new ArrayBuilder();
+        addMapping(float[].class, arrays);
+        addMapping(int[].class, arrays);
+        addMapping(boolean[].class, arrays);
     }
 
-    public void addListenerFor(String id, final String name,
-            final Object context) {
-        Controller ctrl = getForID(id);
+    /**
+     * Attaches the given listener to the controller with the given ID.
+     * 
+     * @param id
+     *            controller ID
+     * @param listener
+     * @return true, if the controller exists
+     */
+    public boolean addListenerFor(String id, GUIWidgetListener listener) {
+        GUIWidget ctrl = getWidget(id);
         if (ctrl != null) {
-            ctrl.addListener(new ControlListener() {
-
-                public void controlEvent(ControlEvent e) {
-                    try {
-                        Method method =
-                                context.getClass().getMethod(name,
-                                        ControlEvent.class);
-                        method.invoke(context, e);
-                    } catch (SecurityException ex) {
-                        ex.printStackTrace();
-                    } catch (NoSuchMethodException ex) {
-                        ex.printStackTrace();
-                    } catch (IllegalArgumentException ex) {
-                        ex.printStackTrace();
-                    } catch (IllegalAccessException ex) {
-                        ex.printStackTrace();
-                    } catch (InvocationTargetException ex) {
-                        ex.printStackTrace();
-                    }
-                }
-            });
+            if (isMetricsEnabled) {
+                listener = metrics.createTimedListener(id, listener);
+            }
+            ctrl.addListener(listener);
+            return true;
+        }
+        logger.warning("no controller with ID: " + id);
+        return false;
+    }
+
+    public synchronized void addMapping(Class<?> c, GUIElementBuilder builder) {
+        HashMap<Class<?>, GUIElementBuilder> map =
+                new HashMap<Class<?>, GUIElementBuilder>(builders);
+        map.put(c, builder);
+        builders = map;
+        resolvedBuilders =
+                new ConcurrentHashMap<Class<?>, GUIElementBuilder>();
+    }
+
+    /**
+     * Creates a new {@link GUIParameter} for a value controlled by the
+     * controller with the given ID. Called by {@link GUIElementBuilder}s
+     * before creating the controller itself.
+     * 
+     * @param id
+     *            controller ID
+     * @param target
+     *            object owning the value
+     * @param accessor
+     *            accessor for the value in the target
+     * @param type
+     *            {@link GUIParameter#FLOAT}, {@link GUIParameter#INT} or
+     *            {@link GUIParameter#BOOLEAN}
+     * @param min
+     * @param max
+     * @return parameter
+     */
+    public GUIParameter bindParameter(String id, Object target,
+            FieldAccessor accessor, int type, float min, float max) {
+        GUIParameter p =
+                parameters.add(id, target, accessor, type, min, max);
+        parameterIDs.put(id, p);
+        if (currBinding != null) {
+            currBinding.parameters.add(p.getIndex());
+            if (currBinding.isWeak()) {
+                parameters.setWeak(p.getIndex());
+            }
+        }
+        if (currSmooth != null) {
+            p.setSmoothing(currSmooth.type(), currSmooth.value());
+        }
+        return p;
+    }
+
+    private GUIContextBinding bindingFor(Object context) {
+        GUIContextBinding b = findBinding(context);
+        if (b == null) {
+            if (isWeakContextsEnabled) {
+                b = new GUIContextBinding(context, staleContexts);
+                numWeakBindings++;
+            } else {
+                b = new GUIContextBinding(context, null);
+            }
+            bindings.put(b, b);
         }
+        return b;
     }
 
-    public void addMapping(Class<?> c, GUIElementBuilder builder) {
-        builders.put(c, builder);
+    /**
+     * Closes the remote endpoint opened via
+     * {@link #openRemoteEndpoint(int, int)}, if any.
+     */
+    public synchronized void closeRemoteEndpoint() {
+        if (remoteEndpoint != null) {
+            remoteEndpoint.close();
+            remoteEndpoint = null;
+        }
+    }
+
+    private void collectReplacements(Object oldContext, Object newContext,
+            Map<Object, Object> replacements) throws IllegalAccessException {
+        if (oldContext == newContext || replacements.containsKey(oldContext)) {
+            return;
+        }
+        replacements.put(oldContext, newContext);
+        GUIBindingPlan plan = GUIBindingPlan.forClass(oldContext.getClass());
+        for (GUIBindingPlan.Entry e : plan.getEntries()) {
+            if (e.field.getType().isPrimitive()) {
+                continue;
+            }
+            Object o = e.field.get(oldContext);
+            Object n = e.field.get(newContext);
+            if (o == null) {
+                continue;
+            }
+            if (n == null || n.getClass() != o.getClass()
+                    || (o.getClass().isArray() && Array.getLength(o) != Array
+                            .getLength(n))) {
+                logger.warning("can't rebind field: " + e.field.getName()
+                        + " in context: " + plan.getType().getName());
+                continue;
+            }
+            if (e.kind == GUIBindingPlan.Kind.SUB_CONTEXT) {
+                collectReplacements(o, n, replacements);
+            } else if (o != n) {
+                replacements.put(o, n);
+            }
+        }
     }
 
     public void createControllers(Object context) {
@@ -138,91 +375,91 @@ public class GUIManager {
     }
 
     public void createControllers(Object context, int x, int y, String tab) {
-        this.currPos = new Vec2D(x, y);
+        createControllers(context, x, y, tab, null);
+    }
+
+    /**
+     * Creates controllers for all annotated fields of the context. Controller
+     * IDs are the paths of their fields relative to the context, e.g.
+     * <code>dummy.pos.x</code> for the selected field <code>x</code> of the
+     * field <code>pos</code> in the sub-context <code>dummy</code>. If given,
+     * all IDs are prefixed with the path, e.g. to create controllers for
+     * several instances of the same class.
+     * 
+     * All objects reachable via {@link GUISubContext} fields are discovered
+     * first (in parallel, if an executor has been set via
+     * {@link #setDiscoveryExecutor(Executor)}). Objects referenced more than
+     * once (incl. cyclic references) only get controllers for their first
+     * occurrence. All elements are then measured and positioned by a
+     * {@link GUILayout} before any controllers are created. Elements wrap into
+     * a new column when exceeding the panel height (see
+     * {@link #setPanelHeight(int)}).
+     * 
+     * @param context
+     * @param x
+     * @param y
+     * @param tab
+     * @param path
+     *            ID prefix or null
+     */
+    public void createControllers(Object context, int x, int y, String tab,
+            String path) {
+        boolean isRoot = currBinding == null;
+        if (isRoot) {
+            currBinding = bindingFor(context);
+        }
+        GUILayout layout = new GUILayout(x, y, panelHeight);
         try {
-            for (Field f : context.getClass().getFields()) {
-                GUIElement a = f.getAnnotation(GUIElement.class);
-                final Object subContext = f.get(context);
-                String label =
-                        a != null && !a.label().equals(GUIElement.NO_LABEL) ? a
-                                .label() : f.getName();
-                if (f.isAnnotationPresent(GUISubContext.class)) {
-                    Vec2D origin = currPos.copy();
-                    createControllers(subContext, (int) currPos.x,
-                            (int) currPos.y, tab);
-                    currPos.x = origin.x;
-                } else if (f.isAnnotationPresent(GUIFieldSelector.class)) {
-                    GUIFieldSelector fieldSel =
-                            f.getAnnotation(GUIFieldSelector.class);
-                    List<Field> fields =
-                            getSelectedFieldsIn(subContext, fieldSel.fields());
-                    Vec2D origin = currPos.copy();
-                    GUIElementBuilder builder = null;
-                    for (Field ff : fields) {
-                        Class<?> type = ff.get(subContext).getClass();
-                        builder = getMappingForType(type);
-                        if (builder != null) {
-                            List<Controller> items =
-                                    builder.createElementsFor(subContext, ff,
-                                            currPos, getUUID(), label + " ("
-                                                    + ff.getName() + ")", this);
-                            for (Controller c : items) {
-                                if (tab != null) {
-                                    c.setTab(tab);
-                                }
-                                registerController(c.name(), c);
-                            }
-                            if (fieldSel.horizontal()) {
-                                currPos.x += builder.getMinSpacing().x;
-                            } else {
-                                currPos.y += builder.getMinSpacing().y;
-                            }
-                        }
-                    }
-                    if (fieldSel.horizontal() && builder != null) {
-                        currPos.set(origin.add(0, builder.getMinSpacing().y));
-                    }
-                } else if (a != null) {
-                    Class<?> type = subContext.getClass();
-                    GUIElementBuilder builder = null;
-                    if (a.builder() != GUIElementBuilder.class) {
-                        builder = a.builder().newInstance();
-                    } else {
-                        builder = getMappingForType(type);
-                    }
-                    // logger.info(type + ": " + builder);
-                    if (builder != null) {
-                        Vec2D pos = getPositionFor(a);
-                        List<Controller> items =
-                                builder.createElementsFor(context, f, pos,
-                                        f.getName(), label, this);
-                        for (Controller c : items) {
-                            if (tab != null) {
-                                c.setTab(tab);
-                            }
-                            registerController(c.name(), c);
-                        }
-                        if (a.y() == -1) {
-                            currPos.y += builder.getMinSpacing().y;
-                        }
-                    } else {
-                        logger.info("no mapping found for: " + type);
-                    }
+            new GUIContextGraph(this, context, discoveryExecutor).addTo(
+                    layout, path);
+            layout.layout();
+            for (int i = 0, num = layout.size(); i < num; i++) {
+                if (layout.kinds[i] == GUILayout.ELEMENT) {
+                    createElement(layout, i, tab);
                 }
             }
+        } catch (IllegalAccessException e) {
+            logger.log(Level.WARNING, "can't access context: "
+                    + context.getClass().getName(), e);
+        } finally {
+            layout.clearCreationState();
+            currBinding.layouts.add(layout);
+            if (isRoot) {
+                currBinding = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the controllers for a single layout element. Failures are
+     * logged and only skip the element itself.
+     */
+    private void createElement(GUILayout layout, int i, String tab) {
+        String id = layout.ids[i];
+        currSmooth = layout.smooths[i];
+        try {
+            List<GUIWidget> items =
+                    layout.builders[i].createElementsFor(layout.contexts[i],
+                            layout.fields[i], new Vec2D(layout.getX(i),
+                                    layout.getY(i)), id, layout.labels[i],
+                            this);
+            registerControllers(items, tab);
+            layout.addWidgets(i, items);
+        } catch (GUIBindingException e) {
+            handleBindingError(id, e);
         } catch (IllegalArgumentException e) {
-            e.printStackTrace();
+            logger.log(Level.WARNING, "can't create controller: " + id, e);
         } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InstantiationException e) {
-            e.printStackTrace();
+            logger.log(Level.WARNING, "can't create controller: " + id, e);
+        } finally {
+            currSmooth = null;
         }
     }
 
     public void createControllers(Object context, String tab) {
         int x, y;
         GUIConfiguration config =
-                context.getClass().getAnnotation(GUIConfiguration.class);
+                GUIBindingPlan.forClass(context.getClass()).getConfiguration();
         if (config != null) {
             x = config.x();
             y = config.y();
@@ -233,49 +470,836 @@ public class GUIManager {
         createControllers(context, x, y, tab);
     }
 
-    public Controller getForID(String id) {
-        return controllers.get(id);
+    private void dispose(GUIContextBinding b) {
+        for (GUIWidget w : b.widgets) {
+            String id = w.getID();
+            synchronized (controllerIndex) {
+                if (controllers.remove(id, w)) {
+                    controllerIndex.remove(id);
+                }
+            }
+            w.remove();
+        }
+        for (int i : b.parameters) {
+            GUIParameter p = parameters.getParameter(i);
+            if (p != null) {
+                parameterIDs.remove(p.getID(), p);
+            }
+            parameters.remove(i);
+            if (metrics != null) {
+                metrics.releaseParameter(i);
+            }
+        }
+        b.widgets.clear();
+        b.parameters.clear();
+        if (b.isWeak()) {
+            numWeakBindings--;
+        }
+    }
+
+    /**
+     * Disposes the bindings of all weakly bound contexts which have been
+     * garbage collected (see {@link #setWeakContextsEnabled(boolean)}).
+     * Called automatically by {@link #pre()}.
+     * 
+     * @return number of contexts disposed
+     */
+    public int expungeStaleContexts() {
+        int count = 0;
+        Reference<?> ref;
+        while ((ref = staleContexts.poll()) != null) {
+            GUIContextBinding b = (GUIContextBinding) ref;
+            if (bindings.remove(b) != null) {
+                dispose(b);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private GUIContextBinding findBinding(Object context) {
+        return bindings.get(new GUIContextBinding.Key(context));
+    }
+
+    public FieldAccessorFactory getAccessorFactory() {
+        return accessorFactory;
     }
 
-    public ControlP5 getGUI() {
-        return gui;
+    /**
+     * Convenience version of {@link #getAccessorFor(Field)} to look up public
+     * fields by name, e.g. the limits of a {@link FloatRange}.
+     * 
+     * @param type
+     * @param fieldName
+     * @return accessor
+     * @throws GUIBindingException
+     *             if there's no such field
+     */
+    public FieldAccessor getAccessorFor(Class<?> type, String fieldName) {
+        Field f = GUIBindingPlan.forClass(type).getField(fieldName);
+        if (f == null) {
+            throw new GUIBindingException("can't access/find field: "
+                    + fieldName + " in: " + type.getName());
+        }
+        return getAccessorFor(f);
+    }
+
+    /**
+     * Returns the {@link FieldAccessor} for the given field. On first request
+     * the accessor is obtained from the generated {@link GUIBinder} of the
+     * field's declaring class (if any) or else created via the current
+     * {@link FieldAccessorFactory}.
+     * 
+     * @param field
+     * @return accessor
+     */
+    public FieldAccessor getAccessorFor(Field field) {
+        FieldAccessor accessor = accessors.get(field);
+        if (accessor == null) {
+            GUIBinder binder =
+                    GUIBindingPlan.forClass(field.getDeclaringClass())
+                            .getBinder();
+            if (binder != null) {
+                accessor = binder.getAccessor(field.getName());
+            }
+            if (accessor == null) {
+                accessor = accessorFactory.createAccessor(field);
+            }
+            accessors.put(field, accessor);
+        }
+        return accessor;
     }
 
-    private GUIElementBuilder getMappingForType(Class<?> type) {
-        GUIElementBuilder builder = builders.get(type);
+    /**
+     * @return widget backend used by this manager
+     */
+    public GUIBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Returns the widget created by the backend for the given ID, e.g. to
+     * access the native controller of a {@link ControlP5Backend} widget. In
+     * lazy mode, the widget is created if needed and won't be released
+     * anymore. Off the animation thread, widgets not created yet are only
+     * created during the next frame and null is returned.
+     * 
+     * @param id
+     * @return backend widget or null, if there's none
+     */
+    public GUIWidget getBackendWidget(String id) {
+        GUIWidget w = controllers.get(id);
+        if (w instanceof GUILazyWidget) {
+            final GUILazyWidget lw = (GUILazyWidget) w;
+            if (isAnimationThread()) {
+                w = lw.pin();
+            } else {
+                invokeLater(new Runnable() {
+
+                    public void run() {
+                        lw.pin();
+                    }
+                });
+                w = lw.getWidget();
+            }
+        }
+        return w;
+    }
+
+    /**
+     * @return executor used for discovering sub-contexts or null, if they're
+     *         discovered on the calling thread
+     */
+    public Executor getDiscoveryExecutor() {
+        return discoveryExecutor;
+    }
+
+    /**
+     * @return number of times {@link #pre()} has been called
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return lazy backend or null, if lazy mode isn't enabled (see
+     *         {@link #setLazyEnabled(boolean)})
+     */
+    public GUILazyBackend getLazyBackend() {
+        return lazyBackend;
+    }
+
+    /**
+     * Resolves the builder mapped to the given type. Candidates are checked in
+     * this order, the first mapped one wins:
+     * <ol>
+     * <li>the type itself</li>
+     * <li>all interfaces of the type, breadth-first: direct interfaces in
+     * declaration order, then their super-interfaces</li>
+     * <li>the superclass, again followed by its interfaces, and so on up the
+     * class hierarchy (excluding Object)</li>
+     * </ol>
+     * Results (including types without any mapping) are cached until the next
+     * call to {@link #addMapping(Class, GUIElementBuilder)}.
+     * 
+     * @param type
+     * @return builder or null, if no mapping exists
+     */
+    public GUIElementBuilder getMappingForType(Class<?> type) {
+        // read the cache first, so it's never older than the mappings
+        Map<Class<?>, GUIElementBuilder> cache = resolvedBuilders;
+        GUIElementBuilder builder = cache.get(type);
         if (builder == null) {
-            for (Class<?> c : type.getInterfaces()) {
-                builder = builders.get(c);
-                if (builder != null) {
-                    break;
-                } else {
-                    Class<?> stype = c.getSuperclass();
-                    if (stype != Object.class && stype != null) {
-                        builder = getMappingForType(stype);
+            builder = resolveMappingForType(type, builders);
+            cache.put(type, builder != null ? builder : NO_MAPPING);
+            if (builder == null) {
+                logger.info("no mapping found for: " + type);
+            }
+        } else if (builder == NO_MAPPING) {
+            builder = null;
+        }
+        return builder;
+    }
+
+    /**
+     * @return panel height used for wrapping elements into columns or 0, if
+     *         columns never wrap
+     */
+    public int getPanelHeight() {
+        return panelHeight;
+    }
+
+    public GUIParameter getParameter(String id) {
+        return parameterIDs.get(id);
+    }
+
+    public GUIParameterTable getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return remote endpoint or null, if not opened
+     */
+    public GUIRemoteEndpoint getRemoteEndpoint() {
+        return remoteEndpoint;
+    }
+
+    /**
+     * @param id
+     * @return controller with the given ID or null
+     */
+    public GUIWidget getWidget(String id) {
+        return controllers.get(id);
+    }
+
+    /**
+     * Returns all controllers in the subtree of the given path, i.e. the
+     * controller with that ID (if any) and all controllers whose IDs start
+     * with the path followed by {@link #PATH_SEPARATOR}. A trailing
+     * <code>.*</code> is ignored, so <code>dummy2</code> and
+     * <code>dummy2.*</code> are equivalent. The lookup only takes time
+     * proportional to the size of the subtree.
+     * 
+     * @param path
+     * @return list of controllers, sorted by ID
+     */
+    public List<GUIWidget> getWidgets(String path) {
+        if (path.endsWith(".*")) {
+            path = path.substring(0, path.length() - 2);
+        }
+        if (path.length() == 0 || path.equals("*")) {
+            synchronized (controllerIndex) {
+                return new ArrayList<GUIWidget>(controllerIndex.values());
+            }
+        }
+        List<GUIWidget> widgets = new ArrayList<GUIWidget>();
+        synchronized (controllerIndex) {
+            GUIWidget w = controllerIndex.get(path);
+            if (w != null) {
+                widgets.add(w);
+            }
+            SortedMap<String, GUIWidget> subtree =
+                    controllerIndex.subMap(path + PATH_SEPARATOR, path
+                            + (char) (PATH_SEPARATOR + 1));
+            widgets.addAll(subtree.values());
+        }
+        return widgets;
+    }
+
+    /**
+     * Called by controller listeners if a bound value couldn't be updated.
+     * The default implementation logs the error.
+     * 
+     * @param id
+     *            controller ID
+     * @param e
+     *            error
+     */
+    public void handleBindingError(String id, GUIBindingException e) {
+        logger.log(Level.WARNING, "can't update value for controller: " + id,
+                e);
+    }
+
+    /**
+     * Queues a task to be run on the animation thread at the beginning of the
+     * next {@link #pre()}. Can be called from any thread.
+     * 
+     * @param task
+     */
+    public void invokeLater(Runnable task) {
+        tasks.add(task);
+    }
+
+    /**
+     * @return true, if called from the animation thread (or if
+     *         {@link #pre()} hasn't been called yet)
+     */
+    public boolean isAnimationThread() {
+        Thread t = animationThread;
+        return t == null || t == Thread.currentThread();
+    }
+
+    /**
+     * @return true, if controller events are only applied once per frame
+     */
+    public boolean isFrameSynchronized() {
+        return parameters.isStaging();
+    }
+
+    /**
+     * @param builder
+     * @param value
+     *            bound value
+     * @return spacing needed by the elements created for the value
+     */
+    Vec2D measure(GUIElementBuilder builder, Object value) {
+        if (builder instanceof GUIMeasurable) {
+            return ((GUIMeasurable) builder).getSpacingFor(value);
+        }
+        Vec2D size = spacings.get(builder);
+        if (size == null) {
+            size = builder.getMinSpacing();
+            spacings.put(builder, size);
+        }
+        return size;
+    }
+
+    /**
+     * @return controller metrics or null, if not enabled (see
+     *         {@link #setMetricsEnabled(boolean)})
+     */
+    public GUIMetrics metrics() {
+        return isMetricsEnabled ? metrics : null;
+    }
+
+    /**
+     * Opens a {@link GUIRemoteEndpoint} on the loopback interface, allowing
+     * other processes on the same machine to set parameters via binary UDP
+     * or TCP frames. Received values are applied at the beginning of each
+     * frame (see {@link #pre()}).
+     * 
+     * @param udpPort
+     *            UDP port, 0 for any free port or -1 to disable UDP
+     * @param tcpPort
+     *            TCP port, 0 for any free port or -1 to disable TCP
+     * @return endpoint
+     * @throws IOException
+     *             if the ports can't be bound
+     * @throws IllegalStateException
+     *             if an endpoint is already open
+     */
+    public synchronized GUIRemoteEndpoint openRemoteEndpoint(int udpPort,
+            int tcpPort) throws IOException {
+        if (remoteEndpoint != null) {
+            throw new IllegalStateException("remote endpoint already open");
+        }
+        GUIRemoteEndpoint e = new GUIRemoteEndpoint(this, udpPort, tcpPort);
+        e.start();
+        remoteEndpoint = e;
+        registerPreHook();
+        return e;
+    }
+
+    /**
+     * Per-frame hook, automatically called by Processing before each frame
+     * once any of the per-frame features has been enabled. Runs all tasks
+     * queued via {@link #invokeLater(Runnable)} and values received by the
+     * remote endpoint (if open), then applies all staged parameter updates,
+     * advances smoothed parameters (see {@link Smooth}), then (if enabled)
+     * pushes values changed by code back to their controllers and publishes a
+     * new snapshot. In lazy mode, also creates controllers which became
+     * visible and disposes the bindings of collected contexts (in weak mode).
+     * Also advances the frame counter used by {@link GUIParameterRecorder}.
+     * When not running inside a PApplet, call this manually at the start of
+     * each frame.
+     */
+    public void pre() {
+        animationThread = Thread.currentThread();
+        frameCount++;
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "error in queued task", e);
+            }
+        }
+        GUIRemoteEndpoint remote = remoteEndpoint;
+        if (remote != null) {
+            remote.apply();
+        }
+        parameters.applyStaged();
+        long now = System.nanoTime();
+        GUIParameterSmoother smoother = parameters.getSmoother();
+        if (smoother != null) {
+            smoother.update(lastFrameTime != 0 ? Math.min(
+                    (now - lastFrameTime) * 1e-9f, MAX_SMOOTHING_STEP) : 0);
+        }
+        lastFrameTime = now;
+        if (isAutoSyncEnabled) {
+            parameters.syncControllers();
+        }
+        if (isPublishingSnapshots) {
+            publishSnapshot();
+        }
+        if (numWeakBindings > 0) {
+            expungeStaleContexts();
+        }
+        if (lazyBackend != null) {
+            lazyBackend.update(frameCount);
+        }
+    }
+
+    /**
+     * Captures the current values of all parameters and publishes them as a
+     * new {@link GUIParameterSnapshot}. Should be called from the animation
+     * thread, usually via {@link #pre()}.
+     * 
+     * @return new snapshot
+     */
+    public GUIParameterSnapshot publishSnapshot() {
+        GUIParameterSnapshot prev = snapshot.get();
+        GUIParameterSnapshot snap =
+                new GUIParameterSnapshot(prev.getVersion() + 1, parameters
+                        .read(new float[parameters.size()]), parameters
+                        .getIndexMap());
+        snapshot.set(snap);
+        return snap;
+    }
+
+    /**
+     * Rebinds all controllers created for a context to another instance of
+     * the same class, e.g. after a scene change or reset. The existing
+     * controllers and layout are kept, only the targets of their parameters
+     * are replaced (including those of nested sub-contexts and range objects)
+     * and the controllers are refreshed with the new values, without
+     * triggering any events. Callbacks registered via
+     * {@link ControlP5GUIManager#addListenerFor(String, String, Object)} are
+     * not affected.
+     * 
+     * Should be called from the animation thread.
+     * 
+     * @param oldContext
+     *            currently bound context
+     * @param newContext
+     *            replacement
+     * @return number of parameters rebound, 0 if the old context isn't bound
+     * @throws IllegalArgumentException
+     *             if the contexts are of different classes
+     */
+    public int rebind(Object oldContext, Object newContext) {
+        if (oldContext.getClass() != newContext.getClass()) {
+            throw new IllegalArgumentException("can't rebind "
+                    + oldContext.getClass().getName() + " to "
+                    + newContext.getClass().getName());
+        }
+        GUIContextBinding b = findBinding(oldContext);
+        if (b == null) {
+            return 0;
+        }
+        Map<Object, Object> replacements =
+                new IdentityHashMap<Object, Object>();
+        try {
+            collectReplacements(oldContext, newContext, replacements);
+        } catch (IllegalAccessException e) {
+            logger.log(Level.WARNING, "can't access context: "
+                    + oldContext.getClass().getName(), e);
+        }
+        bindings.remove(b);
+        GUIContextBinding nb =
+                new GUIContextBinding(newContext, b.isWeak() ? staleContexts
+                        : null, b.widgets, b.parameters, b.layouts);
+        bindings.put(nb, nb);
+        b.clear();
+        return parameters.rebind(replacements, nb.parameters);
+    }
+
+    protected void registerController(String id, GUIWidget ctrl) {
+        synchronized (controllerIndex) {
+            controllers.put(id, ctrl);
+            controllerIndex.put(id, ctrl);
+        }
+        if (currBinding != null) {
+            currBinding.widgets.add(ctrl);
+        }
+        if (metrics != null) {
+            ctrl.addListener(metrics.createCounter(id));
+        }
+        GUIParameter p = parameterIDs.get(id);
+        if (p != null) {
+            parameters.setController(p.getIndex(), ctrl);
+        }
+    }
+
+    /**
+     * Ensures {@link #pre()} gets called before each frame, if supported by
+     * the backend (e.g. by the sketch's PApplet).
+     */
+    protected void registerPreHook() {
+        if (!isPreRegistered) {
+            isPreRegistered = backend.registerPreHook(this);
+        }
+    }
+
+    private void registerControllers(List<GUIWidget> items, String tab) {
+        for (GUIWidget c : items) {
+            if (tab != null) {
+                c.setTab(tab);
+            }
+            registerController(c.getID(), c);
+        }
+    }
+
+    private GUIElementBuilder resolveMappingForType(Class<?> type,
+            Map<Class<?>, GUIElementBuilder> builders) {
+        LinkedList<Class<?>> queue = new LinkedList<Class<?>>();
+        HashSet<Class<?>> visited = new HashSet<Class<?>>();
+        for (Class<?> c = type; c != null
+                && (c == type || c != Object.class); c = c.getSuperclass()) {
+            GUIElementBuilder builder = builders.get(c);
+            if (builder != null) {
+                return builder;
+            }
+            queue.add(c);
+            while (!queue.isEmpty()) {
+                for (Class<?> i : queue.removeFirst().getInterfaces()) {
+                    if (visited.add(i)) {
+                        builder = builders.get(i);
+                        if (builder != null) {
+                            return builder;
+                        }
+                        queue.add(i);
                     }
                 }
             }
-            if (builder == null) {
-                Class<?> stype = type.getSuperclass();
-                if (stype != Object.class && stype != null) {
-                    builder = getMappingForType(stype);
+        }
+        return null;
+    }
+
+    private void runOnAnimationThread(Runnable task) {
+        if (isAnimationThread()) {
+            task.run();
+        } else {
+            invokeLater(task);
+        }
+    }
+
+    /**
+     * Sets the factory used to create {@link FieldAccessor}s for bound
+     * fields. Accessors created by the previous factory are discarded, so
+     * this should be called before any controllers are created.
+     * 
+     * @param factory
+     */
+    public void setAccessorFactory(FieldAccessorFactory factory) {
+        accessorFactory = factory;
+        accessors.clear();
+    }
+
+    /**
+     * Enables/disables automatic model-to-view synchronization at the
+     * beginning of each frame (see {@link #syncControllers()}).
+     * 
+     * @param state
+     */
+    public void setAutoSyncEnabled(boolean state) {
+        if (state) {
+            registerPreHook();
+        }
+        isAutoSyncEnabled = state;
+    }
+
+    /**
+     * Sets an executor used to discover the objects reachable from a context
+     * (see {@link #createControllers(Object, int, int, String, String)}) in
+     * parallel. Only field values are read and builders resolved on the
+     * executor's threads, so custom {@link GUIElementBuilder}s must support
+     * concurrent calls to {@link GUIElementBuilder#getMinSpacing()} (or
+     * {@link GUIMeasurable#getSpacingFor(Object)}). Controllers are still
+     * created on the calling thread. The executor isn't shut down by the
+     * manager.
+     * 
+     * @param executor
+     *            executor or null to discover on the calling thread (default)
+     */
+    public void setDiscoveryExecutor(Executor executor) {
+        discoveryExecutor = executor;
+    }
+
+    /**
+     * Enables/disables frame synchronized mode. If enabled, values sent by
+     * controllers are not written to their fields immediately, but are
+     * collected and applied together at the beginning of the next frame (see
+     * {@link #pre()}). Repeated events for the same parameter within a frame
+     * collapse to the most recent value. Disabling applies all pending
+     * values.
+     * 
+     * @param state
+     */
+    public void setFrameSynchronized(boolean state) {
+        if (state) {
+            registerPreHook();
+        }
+        parameters.setStaging(state);
+    }
+
+    /**
+     * Enables/disables lazy controller creation (see {@link GUILazyBackend}).
+     * In lazy mode, controllers are only created once their tab becomes
+     * active. Lazy mode can only be enabled before any controllers have been
+     * created. Disabling it creates all remaining controllers.
+     * 
+     * @param state
+     * @throws IllegalStateException
+     *             if enabled after controllers have been created
+     */
+    public void setLazyEnabled(boolean state) {
+        if (state == (lazyBackend != null)) {
+            return;
+        }
+        if (state) {
+            if (!controllers.isEmpty()) {
+                throw new IllegalStateException(
+                        "lazy mode must be enabled before adding controllers");
+            }
+            lazyBackend = new GUILazyBackend(backend);
+            backend = lazyBackend;
+            registerPreHook();
+        } else {
+            lazyBackend.setReleaseDelay(-1);
+            lazyBackend.materializeAll();
+            backend = lazyBackend.getDelegate();
+            lazyBackend = null;
+        }
+    }
+
+    /**
+     * Enables/disables collecting {@link GUIMetrics} for all controllers.
+     * When enabled, the metrics are also published as JMX MBean. Callback
+     * latencies are only tracked for listeners added while metrics are
+     * enabled.
+     * 
+     * @param state
+     */
+    public void setMetricsEnabled(boolean state) {
+        if (state == isMetricsEnabled) {
+            return;
+        }
+        if (state) {
+            if (metrics == null) {
+                metrics = new GUIMetrics(parameters);
+                for (Map.Entry<String, GUIWidget> e : controllers.entrySet()) {
+                    e.getValue().addListener(
+                            metrics.createCounter(e.getKey()));
                 }
             }
+            metrics.setActive(true);
+            parameters.metrics = metrics;
+            metrics.register(getClass().getSimpleName() + "@"
+                    + Integer.toHexString(System.identityHashCode(this)));
+        } else {
+            parameters.metrics = null;
+            metrics.setActive(false);
+            metrics.unregister();
         }
-        return builder;
+        isMetricsEnabled = state;
     }
 
-    protected Vec2D getPositionFor(GUIElement a) {
-        float x = a.x() != -1 ? a.x() : currPos.x;
-        float y = a.y() != -1 ? a.y() : currPos.y;
-        return new Vec2D(x, y);
+    /**
+     * Sets the panel height used for wrapping elements into new columns and
+     * moves all existing controllers accordingly (e.g. when the window has
+     * been resized). Controllers are only repositioned, not recreated.
+     * 
+     * @param height
+     *            panel height or 0 to never wrap (default)
+     */
+    public void setPanelHeight(final int height) {
+        panelHeight = height;
+        runOnAnimationThread(new Runnable() {
+
+            public void run() {
+                for (GUIContextBinding b : bindings.values()) {
+                    for (GUILayout l : b.layouts) {
+                        l.relayout(height);
+                    }
+                }
+            }
+        });
     }
 
-    protected String getUUID() {
-        return UUID.randomUUID().toString();
+    /**
+     * Enables/disables publishing a {@link GUIParameterSnapshot} at the
+     * beginning of each frame. For snapshots to be consistent across all
+     * parameters, controller updates should be frame synchronized too (see
+     * {@link #setFrameSynchronized(boolean)}).
+     * 
+     * @param state
+     */
+    public void setSnapshotsEnabled(boolean state) {
+        if (state) {
+            registerPreHook();
+            publishSnapshot();
+        }
+        isPublishingSnapshots = state;
     }
 
-    protected void registerController(String id, Controller ctrl) {
-        controllers.put(id, ctrl);
+    /**
+     * Moves all controllers in the subtree of the given path (see
+     * {@link #getWidgets(String)}) to another tab.
+     * 
+     * @param path
+     * @param tab
+     * @return number of controllers moved
+     */
+    public int setTab(final String path, final String tab) {
+        final List<GUIWidget> widgets = getWidgets(path);
+        runOnAnimationThread(new Runnable() {
+
+            public void run() {
+                for (GUIWidget w : widgets) {
+                    w.setTab(tab);
+                }
+            }
+        });
+        return widgets.size();
+    }
+
+    /**
+     * Sets a new value for all controllers in the subtree of the given path
+     * (see {@link #getWidgets(String)}) and notifies their listeners, so that
+     * bound values are updated as well.
+     * 
+     * @param path
+     * @param value
+     * @return number of controllers updated
+     */
+    public int setValue(final String path, final float value) {
+        final List<GUIWidget> widgets = getWidgets(path);
+        runOnAnimationThread(new Runnable() {
+
+            public void run() {
+                for (GUIWidget w : widgets) {
+                    w.changeValue(value);
+                }
+            }
+        });
+        return widgets.size();
+    }
+
+    /**
+     * Shows/hides all controllers in the subtree of the given path (see
+     * {@link #getWidgets(String)}).
+     * 
+     * @param path
+     * @param state
+     * @return number of controllers updated
+     */
+    public int setVisible(final String path, final boolean state) {
+        final List<GUIWidget> widgets = getWidgets(path);
+        runOnAnimationThread(new Runnable() {
+
+            public void run() {
+                for (GUIWidget w : widgets) {
+                    w.setVisible(state);
+                }
+            }
+        });
+        return widgets.size();
+    }
+
+    /**
+     * Enables/disables weak context mode for all contexts bound afterwards. In
+     * weak mode, the manager only holds weak references to contexts (and the
+     * objects their parameters are stored in) and automatically disposes
+     * their controllers once a context has been garbage collected, just like
+     * {@link #unbind(Object)} would. Collected contexts are checked for in
+     * {@link #pre()}. Callbacks registered via
+     * {@link ControlP5GUIManager#addListenerFor(String, String, Object)} still
+     * reference their context strongly.
+     * 
+     * @param state
+     */
+    public void setWeakContextsEnabled(boolean state) {
+        if (state) {
+            registerPreHook();
+        }
+        isWeakContextsEnabled = state;
+    }
+
+    /**
+     * Returns the most recently published parameter snapshot. This method
+     * never blocks and can be called from any thread.
+     * 
+     * @return snapshot (empty, if none has been published yet)
+     */
+    public GUIParameterSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Updates all controllers whose bound values have been changed by code
+     * since they were last displayed. Only changed controllers are touched
+     * and no events are triggered by the update. Must be called from the
+     * animation thread.
+     * 
+     * @return number of controllers updated
+     */
+    public int syncControllers() {
+        return parameters.syncControllers();
+    }
+
+    /**
+     * Updates all controllers bound to the given object (e.g. an array bound
+     * via {@link ArrayBuilder}) whose values have been changed by code, in
+     * one batch. Must be called from the animation thread.
+     * 
+     * @param target
+     * @return number of controllers updated
+     */
+    public int syncControllers(Object target) {
+        return parameters.syncControllers(target);
+    }
+
+    /**
+     * Removes all controllers created for the given context by
+     * {@link #createControllers(Object, int, int, String)} (incl. listeners
+     * attached to them) and unbinds their parameters, so that the manager
+     * doesn't reference the context anymore. Only contexts passed to
+     * createControllers() directly can be unbound, not their sub-contexts.
+     * 
+     * Should be called from the animation thread.
+     * 
+     * @param context
+     * @return true, if the context was bound
+     */
+    public boolean unbind(Object context) {
+        GUIContextBinding b = findBinding(context);
+        if (b != null) {
+            bindings.remove(b);
+            b.clear();
+            dispose(b);
+            return true;
+        }
+        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import toxi.geom.Vec2D;
+
+/**
+ * Optional interface for {@link GUIElementBuilder}s whose size depends on the
+ * value they're bound to, e.g. the number of items of a radio group. Sizes of
+ * all other builders are only measured once via
+ * {@link GUIElementBuilder#getMinSpacing()}.
+ */
+public interface GUIMeasurable {
+
+    /**
+     * @param value
+     *            current value of the bound field
+     * @return space needed by the elements created for the value
+     */
+    public Vec2D getSpacingFor(Object value);
+}
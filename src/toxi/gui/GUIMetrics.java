@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Optional per-controller instrumentation, enabled via
+ * {@link GUIManager#setMetricsEnabled(boolean)}. For each controller the
+ * number of events and the time of the last event are tracked, as well as
+ * latency histograms of the write-back into the bound field and of the
+ * callbacks added via
+ * {@link GUIManager#addListenerFor(String, GUIWidgetListener)} (only for
+ * listeners added while metrics are enabled).
+ * 
+ * All data is kept in primitive atomic arrays indexed by a slot per
+ * controller, so recording an event costs only a few atomic increments.
+ * Histograms are log-linear (HDR style, 3 bits sub-bucket precision, i.e.
+ * values are accurate to 12.5%) and only allocated for controllers actually
+ * receiving events. Counts may be slightly off while new controllers are
+ * being added.
+ * 
+ * The metrics are also published as a JMX MBean, see
+ * {@link #register(String)}.
+ */
+public class GUIMetrics implements GUIMetricsMBean {
+
+    private static final class Columns {
+
+        final AtomicLongArray eventCounts;
+        final AtomicLongArray lastUpdates;
+        final AtomicReferenceArray<AtomicLongArray> writeHistograms;
+        final AtomicReferenceArray<AtomicLongArray> callbackHistograms;
+
+        Columns(int capacity) {
+            eventCounts = new AtomicLongArray(capacity);
+            lastUpdates = new AtomicLongArray(capacity);
+            writeHistograms =
+                    new AtomicReferenceArray<AtomicLongArray>(capacity);
+            callbackHistograms =
+                    new AtomicReferenceArray<AtomicLongArray>(capacity);
+        }
+
+        Columns(Columns c, int capacity) {
+            this(capacity);
+            for (int i = 0, num = c.eventCounts.length(); i < num; i++) {
+                eventCounts.set(i, c.eventCounts.get(i));
+                lastUpdates.set(i, c.lastUpdates.get(i));
+                writeHistograms.set(i, c.writeHistograms.get(i));
+                callbackHistograms.set(i, c.callbackHistograms.get(i));
+            }
+        }
+    }
+
+    static final int SUB_BITS = 3;
+    static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /**
+     * Number of histogram buckets, covering values up to 2^40 ns (~18 min).
+     */
+    static final int NUM_BUCKETS = (40 - SUB_BITS + 2) * SUB_COUNT;
+
+    /**
+     * @param value
+     * @return histogram bucket for the value
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_COUNT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int m = 63 - Long.numberOfLeadingZeros(value);
+        int index =
+                (m - SUB_BITS + 1) * SUB_COUNT
+                        + (int) ((value >>> (m - SUB_BITS)) & (SUB_COUNT - 1));
+        return index < NUM_BUCKETS ? index : NUM_BUCKETS - 1;
+    }
+
+    /**
+     * @param index
+     * @return smallest value mapped to the given bucket
+     */
+    static long bucketValue(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int m = index / SUB_COUNT + SUB_BITS - 1;
+        return (long) (SUB_COUNT + index % SUB_COUNT) << (m - SUB_BITS);
+    }
+
+    private static long percentile(AtomicLongArray histogram,
+            double percentile) {
+        if (histogram == null) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            total += histogram.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long limit = (long) Math.ceil(total * percentile / 100);
+        long sum = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            sum += histogram.get(i);
+            if (sum >= Math.max(limit, 1)) {
+                return bucketValue(i);
+            }
+        }
+        return bucketValue(NUM_BUCKETS - 1);
+    }
+
+    private static void record(AtomicReferenceArray<AtomicLongArray> hist,
+            int slot, long nanos) {
+        AtomicLongArray h = hist.get(slot);
+        if (h == null) {
+            hist.compareAndSet(slot, null, new AtomicLongArray(NUM_BUCKETS));
+            h = hist.get(slot);
+        }
+        h.incrementAndGet(bucketIndex(nanos));
+    }
+
+    private final GUIParameterTable table;
+
+    private final HashMap<String, Integer> slots =
+            new HashMap<String, Integer>();
+    private final List<String> ids = new ArrayList<String>();
+
+    private volatile Columns columns = new Columns(64);
+
+    // parameter index -> slot + 1
+    private volatile int[] paramSlots = new int[64];
+
+    private volatile long startTime = System.nanoTime();
+
+    private ObjectName objectName;
+
+    private volatile boolean isActive;
+
+    GUIMetrics(GUIParameterTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Creates the listener counting the events of a controller.
+     * 
+     * @param id
+     *            controller ID
+     * @return listener
+     */
+    GUIWidgetListener createCounter(String id) {
+        final int slot = getSlot(id);
+        return new GUIWidgetListener() {
+
+            public void widgetChanged(GUIWidget w, float value) {
+                if (!isActive) {
+                    return;
+                }
+                Columns c = columns;
+                c.eventCounts.incrementAndGet(slot);
+                c.lastUpdates.set(slot, System.currentTimeMillis());
+            }
+        };
+    }
+
+    /**
+     * Wraps the given callback to record its execution time.
+     * 
+     * @param id
+     *            controller ID
+     * @param listener
+     * @return timed listener
+     */
+    public GUIWidgetListener createTimedListener(String id,
+            final GUIWidgetListener listener) {
+        final int slot = getSlot(id);
+        return new GUIWidgetListener() {
+
+            public void widgetChanged(GUIWidget w, float value) {
+                long t = System.nanoTime();
+                try {
+                    listener.widgetChanged(w, value);
+                } finally {
+                    recordCallback(slot, System.nanoTime() - t);
+                }
+            }
+        };
+    }
+
+    public long getCallbackLatency(String id, double percentile) {
+        Integer slot = getSlotIfExists(id);
+        return slot != null ? percentile(columns.callbackHistograms.get(slot),
+                percentile) : 0;
+    }
+
+    public synchronized String[] getControllerIDs() {
+        return ids.toArray(new String[ids.size()]);
+    }
+
+    public long getEventCount(String id) {
+        Integer slot = getSlotIfExists(id);
+        return slot != null ? columns.eventCounts.get(slot) : 0;
+    }
+
+    public double getEventsPerSecond() {
+        return getTotalEventCount() * 1e9 / (System.nanoTime() - startTime);
+    }
+
+    public String[] getHotControllers(int num) {
+        String[] all = getControllerIDs();
+        final Columns c = columns;
+        final HashMap<String, Long> counts = new HashMap<String, Long>();
+        for (String id : all) {
+            counts.put(id, c.eventCounts.get(getSlot(id)));
+        }
+        Arrays.sort(all, new Comparator<String>() {
+
+            public int compare(String a, String b) {
+                return counts.get(b).compareTo(counts.get(a));
+            }
+        });
+        String[] hot = new String[Math.min(num, all.length)];
+        System.arraycopy(all, 0, hot, 0, hot.length);
+        return hot;
+    }
+
+    public long getLastUpdateTime(String id) {
+        Integer slot = getSlotIfExists(id);
+        return slot != null ? columns.lastUpdates.get(slot) : 0;
+    }
+
+    /**
+     * Returns the slot of the given controller, allocating a new one if
+     * needed.
+     * 
+     * @param id
+     *            controller ID
+     * @return slot
+     */
+    synchronized int getSlot(String id) {
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            slot = ids.size();
+            Columns c = columns;
+            if (slot == c.eventCounts.length()) {
+                columns = new Columns(c, slot * 2);
+            }
+            slots.put(id, slot);
+            ids.add(id);
+        }
+        return slot;
+    }
+
+    private synchronized Integer getSlotIfExists(String id) {
+        return slots.get(id);
+    }
+
+    public long getTotalEventCount() {
+        Columns c = columns;
+        long total = 0;
+        for (int i = 0, num = c.eventCounts.length(); i < num; i++) {
+            total += c.eventCounts.get(i);
+        }
+        return total;
+    }
+
+    public long getWriteLatency(String id, double percentile) {
+        Integer slot = getSlotIfExists(id);
+        return slot != null ? percentile(columns.writeHistograms.get(slot),
+                percentile) : 0;
+    }
+
+    void recordCallback(int slot, long nanos) {
+        if (isActive) {
+            record(columns.callbackHistograms, slot, nanos);
+        }
+    }
+
+    /**
+     * Records the write-back time of a parameter. Called by
+     * {@link GUIParameterTable#set(int, float)}.
+     * 
+     * @param paramIndex
+     * @param nanos
+     */
+    void recordWrite(int paramIndex, long nanos) {
+        int[] ps = paramSlots;
+        int slot;
+        if (paramIndex < ps.length && ps[paramIndex] != 0) {
+            slot = ps[paramIndex] - 1;
+        } else {
+            slot = resolveParameter(paramIndex);
+        }
+        record(columns.writeHistograms, slot, nanos);
+    }
+
+    /**
+     * Publishes the metrics via the platform MBean server under the name
+     * <code>toxi.gui:type=GUIMetrics,name=...</code>. Errors are logged.
+     * 
+     * @param name
+     */
+    public synchronized void register(String name) {
+        unregister();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on =
+                    new ObjectName("toxi.gui:type=GUIMetrics,name="
+                            + ObjectName.quote(name));
+            server.registerMBean(this, on);
+            objectName = on;
+        } catch (JMException e) {
+            GUIManager.logger.warning("can't register metrics MBean: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets the controller slot of a removed parameter, whose index may be
+     * reused.
+     * 
+     * @param paramIndex
+     */
+    synchronized void releaseParameter(int paramIndex) {
+        int[] ps = paramSlots;
+        if (paramIndex < ps.length) {
+            ps[paramIndex] = 0;
+            paramSlots = ps;
+        }
+    }
+
+    public synchronized void reset() {
+        columns = new Columns(columns.eventCounts.length());
+        startTime = System.nanoTime();
+    }
+
+    private synchronized int resolveParameter(int paramIndex) {
+        int[] ps = paramSlots;
+        if (paramIndex >= ps.length) {
+            ps =
+                    GUIParameterTable.grow(ps, Math.max(paramIndex + 1,
+                            ps.length * 2));
+        }
+        if (ps[paramIndex] == 0) {
+            ps[paramIndex] = getSlot(table.getID(paramIndex)) + 1;
+        }
+        paramSlots = ps;
+        return ps[paramIndex] - 1;
+    }
+
+    /**
+     * Enables/disables recording of counts and callback latencies. Disabled
+     * metrics keep their data.
+     * 
+     * @param state
+     */
+    void setActive(boolean state) {
+        isActive = state;
+    }
+
+    /**
+     * Removes the MBean registered via {@link #register(String)}, if any.
+     */
+    public synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                        objectName);
+            } catch (JMException e) {
+                GUIManager.logger.warning("can't unregister metrics MBean: "
+                        + e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+/**
+ * JMX management interface of {@link GUIMetrics}. All latencies are in
+ * nanoseconds.
+ */
+public interface GUIMetricsMBean {
+
+    /**
+     * @param id
+     *            controller ID
+     * @param percentile
+     *            (0.0 .. 100.0)
+     * @return approximate callback latency at the given percentile
+     */
+    public long getCallbackLatency(String id, double percentile);
+
+    /**
+     * @return IDs of all controllers which have received events
+     */
+    public String[] getControllerIDs();
+
+    /**
+     * @param id
+     *            controller ID
+     * @return number of events received by the controller
+     */
+    public long getEventCount(String id);
+
+    /**
+     * @return average number of events per second since the metrics have
+     *         been enabled or reset
+     */
+    public double getEventsPerSecond();
+
+    /**
+     * @param num
+     * @return IDs of the controllers with the most events, in descending order
+     */
+    public String[] getHotControllers(int num);
+
+    /**
+     * @param id
+     *            controller ID
+     * @return time of the last event (in milliseconds since the epoch) or 0
+     */
+    public long getLastUpdateTime(String id);
+
+    public long getTotalEventCount();
+
+    /**
+     * @param id
+     *            controller ID
+     * @param percentile
+     *            (0.0 .. 100.0)
+     * @return approximate write-back latency at the given percentile
+     */
+    public long getWriteLatency(String id, double percentile);
+
+    /**
+     * Clears all counters and histograms.
+     */
+    public void reset();
+}
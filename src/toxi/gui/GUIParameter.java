@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+/**
+ * Handle for a single numeric value bound to a controller, e.g. a slider
+ * position, toggle state or range limit. Parameters are created by
+ * {@link GUIElementBuilder}s via
+ * {@link GUIManager#bindParameter(String, Object, FieldAccessor, int, float, float)}
+ * and all writes from controller listeners should go through
+ * {@link #set(float)}, which lets the {@link GUIManager} decide when the
+ * value is actually stored in the target object.
+ * 
+ * Values of all types are represented as floats: integers are truncated and
+ * booleans are encoded as 0 (false) or 1 (true).
+ */
+public class GUIParameter {
+
+    public static final int FLOAT = 0;
+    public static final int INT = 1;
+    public static final int BOOLEAN = 2;
+
+    protected final GUIParameterTable table;
+    protected final int index;
+
+    GUIParameter(GUIParameterTable table, int index) {
+        this.table = table;
+        this.index = index;
+    }
+
+    /**
+     * Reads the current value from the target object.
+     * 
+     * @return current value
+     */
+    public float get() {
+        return table.get(index);
+    }
+
+    public FieldAccessor getAccessor() {
+        return table.accessors[index];
+    }
+
+    public GUIWidget getController() {
+        return table.controllers[index];
+    }
+
+    public String getID() {
+        return table.ids[index];
+    }
+
+    /**
+     * @return position of this parameter in its {@link GUIParameterTable}
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Like {@link #get()}, but in frame synchronized mode also takes into
+     * account values which have been set but not yet applied. Should be used
+     * when validating new values against other parameters.
+     * 
+     * @return latest value
+     */
+    public float getLatest() {
+        return table.getLatest(index);
+    }
+
+    public float getMax() {
+        return table.max[index];
+    }
+
+    public float getMin() {
+        return table.min[index];
+    }
+
+    public Object getTarget() {
+        return table.getTarget(index);
+    }
+
+    /**
+     * @return true, if the parameter hasn't been removed (e.g. via
+     *         {@link GUIManager#unbind(Object)}) and its target still exists
+     */
+    public boolean isBound() {
+        return table.params[index] == this && table.isBound(index);
+    }
+
+    public int getType() {
+        return table.types[index];
+    }
+
+    /**
+     * @return true, if the parameter selects one of several items
+     * @see GUIParameterTable#setChoice(int, boolean)
+     */
+    public boolean isChoice() {
+        return table.isChoice[index];
+    }
+
+    /**
+     * Writes a new value to the target object (clipped to the parameter's
+     * min/max range). If the {@link GUIManager} is frame synchronized the
+     * value is only staged and applied at the beginning of the next frame.
+     * Writes to removed parameters are ignored.
+     * 
+     * @param value
+     */
+    public void set(float value) {
+        if (table.params[index] == this) {
+            table.set(index, value);
+        }
+    }
+
+    /**
+     * Marks the parameter as selecting one of several items, see
+     * {@link GUIParameterTable#setChoice(int, boolean)}.
+     * 
+     * @param state
+     */
+    public void setChoice(boolean state) {
+        if (table.params[index] == this) {
+            table.setChoice(index, state);
+        }
+    }
+
+    /**
+     * Smooths all values applied to this parameter, see
+     * {@link GUIParameterTable#setSmoothing(int, Smooth.Type, float)}.
+     * 
+     * @param type
+     *            filter type or null to remove the filter
+     * @param value
+     *            filter time or rate, see {@link Smooth.Type}
+     */
+    public void setSmoothing(Smooth.Type type, float value) {
+        if (table.params[index] == this) {
+            table.setSmoothing(index, type, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GUIParameter: " + getID() + " [" + getMin() + "," + getMax()
+                + "]";
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Undo/redo history of all parameter changes sent by controllers (i.e. all
+ * values passed to {@link GUIParameterTable#set(int, float)}). Each entry
+ * stores the parameter index together with its old and new value in
+ * segments of primitive arrays, so recording doesn't allocate except when a
+ * new segment is needed.
+ * 
+ * Consecutive changes of the same parameter are merged into a single entry
+ * as long as they're no more than the merge window apart (see
+ * {@link #setMergeWindow(long)}), so a slider drag producing hundreds of
+ * events can be undone in one step. Calling {@link #seal()} (e.g. on mouse
+ * release) forces the next change to start a new entry.
+ * 
+ * The history keeps at least the configured number of entries. Once that
+ * depth is exceeded by a whole segment, the oldest segment is evicted, so
+ * memory use is bounded by depth + {@link #SEGMENT_SIZE} entries.
+ * 
+ * {@link #undo(int)} and {@link #redo(int)} apply their steps as one batch:
+ * each affected parameter is written (and its controller updated) only once,
+ * with its final value. Both need to be called from the animation thread.
+ */
+public class GUIParameterHistory {
+
+    /**
+     * Number of entries per segment.
+     */
+    public static final int SEGMENT_SIZE = 256;
+
+    public static final int DEFAULT_DEPTH = 1000;
+
+    public static final long DEFAULT_MERGE_WINDOW = 500;
+
+    private static final class Segment {
+
+        final int[] indices = new int[SEGMENT_SIZE];
+        final float[] oldValues = new float[SEGMENT_SIZE];
+        final float[] newValues = new float[SEGMENT_SIZE];
+    }
+
+    private final GUIParameterTable table;
+
+    private final List<Segment> segments = new ArrayList<Segment>();
+
+    // evicted/truncated segment kept for reuse
+    private Segment spare;
+
+    // number of entries, counted from the start of the first segment
+    private int numEntries;
+
+    // entries before this position can be undone, the others redone
+    private int position;
+
+    private int depth;
+
+    private long mergeWindow;
+
+    // time of the last change merged into the newest entry
+    private long lastTime;
+
+    private boolean isSealed = true;
+
+    // per parameter scratch space for building batches
+    private float[] batchValues = new float[0];
+    private boolean[] isBatched = new boolean[0];
+    private int[] batchIndices = new int[0];
+    private int numBatched;
+
+    /**
+     * Creates a new history with {@link #DEFAULT_DEPTH} and
+     * {@link #DEFAULT_MERGE_WINDOW}. Call {@link #start()} to begin recording.
+     * 
+     * @param gui
+     */
+    public GUIParameterHistory(GUIManager gui) {
+        this(gui, DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param gui
+     * @param depth
+     *            min number of entries kept
+     */
+    public GUIParameterHistory(GUIManager gui, int depth) {
+        this.table = gui.getParameters();
+        this.mergeWindow = DEFAULT_MERGE_WINDOW * 1000000L;
+        setDepth(depth);
+    }
+
+    private void applyBatch() {
+        for (int j = 0; j < numBatched; j++) {
+            int i = batchIndices[j];
+            isBatched[i] = false;
+            if (table.getParameter(i) != null) {
+                table.applyAndUpdate(i, batchValues[i]);
+            }
+        }
+    }
+
+    private void batch(int i, float value) {
+        if (i >= isBatched.length) {
+            int size = Math.max(i + 1, isBatched.length * 2);
+            batchValues = GUIParameterTable.grow(batchValues, size);
+            isBatched = GUIParameterTable.grow(isBatched, size);
+            batchIndices = GUIParameterTable.grow(batchIndices, size);
+        }
+        batchValues[i] = value;
+        if (!isBatched[i]) {
+            isBatched[i] = true;
+            batchIndices[numBatched++] = i;
+        }
+    }
+
+    /**
+     * @return true, if there's at least one entry which can be redone
+     */
+    public synchronized boolean canRedo() {
+        return position < numEntries;
+    }
+
+    /**
+     * @return true, if there's at least one entry which can be undone
+     */
+    public synchronized boolean canUndo() {
+        return position > 0;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        while (!segments.isEmpty()) {
+            spare = segments.remove(segments.size() - 1);
+        }
+        numEntries = 0;
+        position = 0;
+        isSealed = true;
+    }
+
+    private void evict() {
+        while (segments.size() > 1 && position >= SEGMENT_SIZE
+                && numEntries - SEGMENT_SIZE >= depth) {
+            spare = segments.remove(0);
+            numEntries -= SEGMENT_SIZE;
+            position -= SEGMENT_SIZE;
+        }
+    }
+
+    /**
+     * Invalidates all entries of a removed parameter, since its index will be
+     * reused.
+     * 
+     * @param i
+     *            parameter index
+     */
+    synchronized void forget(int i) {
+        for (int k = 0, n = segments.size(); k < n; k++) {
+            int[] indices = segments.get(k).indices;
+            for (int j = 0; j < SEGMENT_SIZE; j++) {
+                if (indices[j] == i) {
+                    indices[j] = -1;
+                }
+            }
+        }
+        isSealed = true;
+    }
+
+    /**
+     * @return min number of entries kept
+     */
+    public synchronized int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return max time (in milliseconds) between two changes of a parameter
+     *         to be merged into one entry
+     */
+    public synchronized long getMergeWindow() {
+        return mergeWindow / 1000000L;
+    }
+
+    /**
+     * @return number of entries which can be redone
+     */
+    public synchronized int getNumRedo() {
+        return numEntries - position;
+    }
+
+    /**
+     * @return number of entries which can be undone
+     */
+    public synchronized int getNumUndo() {
+        return position;
+    }
+
+    /**
+     * @return true, if changes are currently recorded
+     */
+    public boolean isRecording() {
+        return table.history == this;
+    }
+
+    /**
+     * Called by {@link GUIParameterTable#set(int, float)} for each change,
+     * before the new value is staged or applied. The old value is only read
+     * (via {@link GUIParameterTable#getIntended(int)}) when a new entry is
+     * started, not for changes merged into the current one.
+     * 
+     * @param i
+     *            parameter index
+     * @param newValue
+     */
+    synchronized void record(int i, float newValue) {
+        long now = System.nanoTime();
+        if (!isSealed && position == numEntries && numEntries > 0
+                && now - lastTime <= mergeWindow) {
+            int k = numEntries - 1;
+            Segment s = segments.get(k / SEGMENT_SIZE);
+            int j = k % SEGMENT_SIZE;
+            if (s.indices[j] == i) {
+                s.newValues[j] = newValue;
+                lastTime = now;
+                if (newValue == s.oldValues[j]) {
+                    // back to where the drag started
+                    numEntries--;
+                    position--;
+                    isSealed = true;
+                    trim();
+                }
+                return;
+            }
+        }
+        float oldValue = table.getIntended(i);
+        if (oldValue == newValue) {
+            return;
+        }
+        truncate();
+        int j = numEntries % SEGMENT_SIZE;
+        if (j == 0) {
+            Segment s = spare != null ? spare : new Segment();
+            spare = null;
+            segments.add(s);
+        }
+        Segment s = segments.get(segments.size() - 1);
+        s.indices[j] = i;
+        s.oldValues[j] = oldValue;
+        s.newValues[j] = newValue;
+        numEntries++;
+        position = numEntries;
+        lastTime = now;
+        isSealed = false;
+        evict();
+    }
+
+    /**
+     * Redoes the next undone entry.
+     * 
+     * @return number of parameters updated
+     */
+    public int redo() {
+        return redo(1);
+    }
+
+    /**
+     * Redoes up to the given number of undone entries as one batch.
+     * 
+     * @param steps
+     * @return number of parameters updated
+     */
+    public synchronized int redo(int steps) {
+        int end = Math.min(position + Math.max(steps, 0), numEntries);
+        numBatched = 0;
+        for (int k = position; k < end; k++) {
+            Segment s = segments.get(k / SEGMENT_SIZE);
+            int j = k % SEGMENT_SIZE;
+            if (s.indices[j] != -1) {
+                batch(s.indices[j], s.newValues[j]);
+            }
+        }
+        position = end;
+        isSealed = true;
+        applyBatch();
+        return numBatched;
+    }
+
+    /**
+     * Ends the current entry, so the next change always starts a new one,
+     * even if it's for the same parameter and within the merge window.
+     */
+    public synchronized void seal() {
+        isSealed = true;
+    }
+
+    /**
+     * Sets the min number of entries kept. Older entries are evicted in whole
+     * segments once the depth is exceeded by at least {@link #SEGMENT_SIZE}
+     * entries.
+     * 
+     * @param depth
+     */
+    public synchronized void setDepth(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be >= 1");
+        }
+        this.depth = depth;
+        evict();
+    }
+
+    /**
+     * @param millis
+     *            max time between two changes of a parameter to be merged
+     *            into one entry, 0 to never merge
+     */
+    public synchronized void setMergeWindow(long millis) {
+        mergeWindow = Math.max(millis, 0) * 1000000L;
+        if (millis <= 0) {
+            isSealed = true;
+        }
+    }
+
+    /**
+     * Starts recording all changes sent by controllers.
+     */
+    public void start() {
+        table.history = this;
+    }
+
+    /**
+     * Stops recording. Existing entries can still be undone/redone.
+     */
+    public synchronized void stop() {
+        if (table.history == this) {
+            table.history = null;
+        }
+        isSealed = true;
+    }
+
+    // drops all entries which can be redone
+    private void truncate() {
+        if (position < numEntries) {
+            numEntries = position;
+            trim();
+        }
+    }
+
+    // releases segments without entries
+    private void trim() {
+        int numSegments = (numEntries + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+        while (segments.size() > numSegments) {
+            spare = segments.remove(segments.size() - 1);
+        }
+    }
+
+    /**
+     * Undoes the most recent entry.
+     * 
+     * @return number of parameters updated
+     */
+    public int undo() {
+        return undo(1);
+    }
+
+    /**
+     * Undoes up to the given number of entries as one batch.
+     * 
+     * @param steps
+     * @return number of parameters updated
+     */
+    public synchronized int undo(int steps) {
+        int end = Math.max(position - Math.max(steps, 0), 0);
+        numBatched = 0;
+        for (int k = position - 1; k >= end; k--) {
+            Segment s = segments.get(k / SEGMENT_SIZE);
+            int j = k % SEGMENT_SIZE;
+            if (s.indices[j] != -1) {
+                batch(s.indices[j], s.oldValues[j]);
+            }
+        }
+        position = end;
+        isSealed = true;
+        applyBatch();
+        return numBatched;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+/**
+ * Interpolates all bound parameters of a {@link GUIManager} between stored
+ * parameter states, e.g. captured via {@link #capture(float[])} or loaded
+ * from a {@link GUIPresetBank}. A state is a float array indexed like the
+ * manager's {@link GUIParameterTable}, NaN entries are ignored.
+ * 
+ * Numeric values are interpolated and clipped to the min/max range of their
+ * parameter (integers are rounded). Boolean parameters and choices (e.g.
+ * radio selections, see {@link GUIParameter#setChoice(boolean)}) switch
+ * once the interpolation position (or blend weight) crosses a threshold.
+ * Updates are written to fields and controllers directly, without
+ * triggering controller listeners. No objects are allocated during updates,
+ * making it safe to call {@link #update(float)} every frame. Morphs should
+ * only be used from the animation thread.
+ */
+public class GUIParameterMorph {
+
+    public enum Easing {
+
+        LINEAR {
+
+            @Override
+            public float apply(float t) {
+                return t;
+            }
+        },
+
+        EASE_IN {
+
+            @Override
+            public float apply(float t) {
+                return t * t;
+            }
+        },
+
+        EASE_OUT {
+
+            @Override
+            public float apply(float t) {
+                return t * (2 - t);
+            }
+        },
+
+        EASE_IN_OUT {
+
+            @Override
+            public float apply(float t) {
+                return t * t * (3 - 2 * t);
+            }
+        };
+
+        /**
+         * @param t
+         *            normalized time (0.0 .. 1.0)
+         * @return eased position
+         */
+        public abstract float apply(float t);
+    }
+
+    protected final GUIParameterTable table;
+
+    private float[] from = new float[0];
+    private float[] to = new float[0];
+    private int size;
+
+    private Easing easing = Easing.LINEAR;
+    private float duration;
+    private float time;
+    private boolean isActive;
+    private float threshold = 0.5f;
+
+    public GUIParameterMorph(GUIManager gui) {
+        this.table = gui.getParameters();
+    }
+
+    /**
+     * Sets all parameters to a weighted blend of the given states. Weights
+     * are normalized, so they don't need to add up to 1. Boolean parameters
+     * become true, if the normalized total weight of states with a true value
+     * is at least the current threshold. Choices take the value with the
+     * highest total weight.
+     * 
+     * @param states
+     *            parameter states
+     * @param weights
+     *            weight for each state
+     * @param numStates
+     *            number of states to use
+     */
+    public void blend(float[][] states, float[] weights, int numStates) {
+        int num = table.size();
+        int[] types = table.types;
+        boolean[] isChoice = table.isChoice;
+        for (int i = 0; i < num; i++) {
+            if (isChoice[i]) {
+                float v = blendChoice(states, weights, numStates, i);
+                if (v == v) {
+                    table.applyAndUpdate(i, v);
+                }
+                continue;
+            }
+            float sum = 0, totalWeight = 0;
+            for (int k = 0; k < numStates; k++) {
+                float[] s = states[k];
+                if (i < s.length) {
+                    float v = s[i];
+                    if (v == v) {
+                        float w = weights[k];
+                        if (types[i] == GUIParameter.BOOLEAN) {
+                            v = v > 0 ? 1 : 0;
+                        }
+                        sum += v * w;
+                        totalWeight += w;
+                    }
+                }
+            }
+            if (totalWeight > 0) {
+                float v = sum / totalWeight;
+                if (types[i] == GUIParameter.BOOLEAN) {
+                    v = v >= threshold ? 1 : 0;
+                } else if (types[i] == GUIParameter.INT) {
+                    v = Math.round(v);
+                }
+                table.applyAndUpdate(i, v);
+            }
+        }
+    }
+
+    // value of the choice with the highest total weight or NaN
+    private float blendChoice(float[][] states, float[] weights,
+            int numStates, int i) {
+        float best = Float.NaN, bestWeight = 0;
+        for (int k = 0; k < numStates; k++) {
+            float v = i < states[k].length ? states[k][i] : Float.NaN;
+            if (v != v || v == best) {
+                continue;
+            }
+            float w = 0;
+            for (int j = k; j < numStates; j++) {
+                if (i < states[j].length && states[j][i] == v) {
+                    w += weights[j];
+                }
+            }
+            if (w > bestWeight) {
+                best = v;
+                bestWeight = w;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reads the current values of all parameters.
+     * 
+     * @param dest
+     *            target array or null to allocate a new one
+     * @return state
+     */
+    public float[] capture(float[] dest) {
+        int num = table.size();
+        if (dest == null || dest.length < num) {
+            dest = new float[num];
+        }
+        return table.read(dest);
+    }
+
+    private void copyState(float[] src, float[] dest) {
+        int num = Math.min(src.length, size);
+        System.arraycopy(src, 0, dest, 0, num);
+        for (int i = num; i < size; i++) {
+            dest[i] = Float.NaN;
+        }
+    }
+
+    public float getDuration() {
+        return duration;
+    }
+
+    public Easing getEasing() {
+        return easing;
+    }
+
+    /**
+     * @return normalized progress of the current tween (0.0 .. 1.0)
+     */
+    public float getProgress() {
+        return duration > 0 ? Math.min(time / duration, 1) : 1;
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets all parameters to the position t between the states given to the
+     * last call of {@link #start(float[], float[], float, Easing)}.
+     * 
+     * @param t
+     *            interpolation position (0.0 .. 1.0), before easing
+     */
+    public void interpolate(float t) {
+        float e = easing.apply(t < 0 ? 0 : t > 1 ? 1 : t);
+        int num = Math.min(size, table.size());
+        int[] types = table.types;
+        boolean[] isChoice = table.isChoice;
+        float[] a = from;
+        float[] b = to;
+        for (int i = 0; i < num; i++) {
+            float va = a[i];
+            float vb = b[i];
+            if (va != va) {
+                if (vb == vb && e >= threshold) {
+                    table.applyAndUpdate(i, vb);
+                }
+                continue;
+            }
+            if (vb != vb) {
+                continue;
+            }
+            if (types[i] == GUIParameter.BOOLEAN || isChoice[i]) {
+                table.applyAndUpdate(i, e >= threshold ? vb : va);
+            } else if (types[i] == GUIParameter.INT) {
+                table.applyAndUpdate(i, Math.round(va + (vb - va) * e));
+            } else {
+                table.applyAndUpdate(i, va + (vb - va) * e);
+            }
+        }
+    }
+
+    public boolean isActive() {
+        return isActive;
+    }
+
+    /**
+     * Sets the threshold at which boolean parameters switch to their target
+     * state (default: 0.5).
+     * 
+     * @param threshold
+     */
+    public void setThreshold(float threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Starts a new tween between the given states. The states are copied, so
+     * the arrays can be reused by the caller.
+     * 
+     * @param fromState
+     *            start state (or null to use the current values)
+     * @param toState
+     *            target state
+     * @param duration
+     *            duration in the same unit as passed to {@link #update(float)}
+     *            (e.g. frames or seconds)
+     * @param easing
+     */
+    public void start(float[] fromState, float[] toState, float duration,
+            Easing easing) {
+        size = table.size();
+        if (from.length < size) {
+            from = new float[size];
+            to = new float[size];
+        }
+        if (fromState != null) {
+            copyState(fromState, from);
+        } else {
+            table.read(from);
+        }
+        copyState(toState, to);
+        this.duration = duration;
+        this.easing = easing != null ? easing : Easing.LINEAR;
+        this.time = 0;
+        this.isActive = true;
+    }
+
+    public void stop() {
+        isActive = false;
+    }
+
+    /**
+     * Advances the current tween by the given time step and updates all
+     * parameters.
+     * 
+     * @param dt
+     *            time step
+     * @return true, if the tween is still running
+     */
+    public boolean update(float dt) {
+        if (isActive) {
+            time += dt;
+            float t = getProgress();
+            interpolate(t);
+            if (t >= 1) {
+                isActive = false;
+            }
+        }
+        return isActive;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Replays a log written by a {@link GUIParameterRecorder}. The whole log is
+ * loaded into primitive arrays up front, so playback doesn't do any I/O or
+ * allocation and can run at any rate, e.g. driven by the frame counter of an
+ * offline renderer. Recorded controller IDs are mapped to the parameters
+ * currently bound by the {@link GUIManager}, events for unknown IDs are
+ * skipped.
+ * 
+ * All events recorded during a frame are applied at once when playback
+ * reaches that frame, fields and controllers are updated without triggering
+ * controller events.
+ */
+public class GUIParameterPlayer {
+
+    protected final GUIParameterTable table;
+
+    private int[] frames = new int[1024];
+    private int[] indices = new int[1024];
+    private float[] values = new float[1024];
+    private int numEvents;
+
+    private int cursor;
+    private int frame = -1;
+
+    /**
+     * Loads the given log file.
+     * 
+     * @param gui
+     * @param file
+     * @throws IOException
+     */
+    public GUIParameterPlayer(GUIManager gui, File file) throws IOException {
+        this.table = gui.getParameters();
+        DataInputStream in =
+                new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(file), 1 << 16));
+        try {
+            if (in.readInt() != GUIParameterRecorder.MAGIC) {
+                throw new IOException("not a parameter recording");
+            }
+            int version = in.readInt();
+            if (version != GUIParameterRecorder.VERSION) {
+                throw new IOException("unsupported recording version: "
+                        + version);
+            }
+            load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return frame last played back or -1, if playback hasn't started yet
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return number of frames in the recording
+     */
+    public int getLength() {
+        return numEvents > 0 ? frames[numEvents - 1] + 1 : 0;
+    }
+
+    public int getNumEvents() {
+        return numEvents;
+    }
+
+    /**
+     * @return true, if all events have been played back
+     */
+    public boolean isFinished() {
+        return cursor == numEvents;
+    }
+
+    private void load(DataInputStream in) throws IOException {
+        Map<String, Integer> indexMap = table.getIndexMap();
+        int[] columns = new int[64];
+        int numColumns = 0;
+        while (true) {
+            int tag;
+            try {
+                tag = in.readByte();
+            } catch (EOFException e) {
+                break;
+            }
+            if (tag == GUIParameterRecorder.TAG_ID) {
+                int index = in.readInt();
+                byte[] b = new byte[in.readUnsignedShort()];
+                in.readFully(b);
+                String id = new String(b, "UTF-8");
+                Integer col = indexMap.get(id);
+                if (col == null) {
+                    GUIManager.logger.info("skipping unknown parameter: " + id);
+                }
+                if (index >= columns.length) {
+                    columns =
+                            GUIParameterTable.grow(columns, Math.max(
+                                    index + 1, columns.length * 2));
+                }
+                columns[index] = col != null ? col : -1;
+                numColumns = Math.max(numColumns, index + 1);
+            } else if (tag == GUIParameterRecorder.TAG_EVENT) {
+                // events racing a frame change may be slightly out of order
+                int f = in.readInt();
+                if (numEvents > 0 && f < frames[numEvents - 1]) {
+                    f = frames[numEvents - 1];
+                }
+                int index = in.readInt();
+                float v = in.readFloat();
+                if (index >= numColumns) {
+                    throw new IOException("undeclared parameter index: "
+                            + index);
+                }
+                int col = columns[index];
+                if (col != -1) {
+                    if (numEvents == frames.length) {
+                        int len = numEvents * 2;
+                        frames = GUIParameterTable.grow(frames, len);
+                        indices = GUIParameterTable.grow(indices, len);
+                        values = GUIParameterTable.grow(values, len);
+                    }
+                    frames[numEvents] = f;
+                    indices[numEvents] = col;
+                    values[numEvents] = v;
+                    numEvents++;
+                }
+            } else {
+                throw new IOException("corrupt recording, unknown tag: "
+                        + tag);
+            }
+        }
+    }
+
+    /**
+     * Resets playback to the beginning of the recording. The next call to
+     * {@link #seek(int)} replays all events up to the requested frame.
+     */
+    public void rewind() {
+        cursor = 0;
+        frame = -1;
+    }
+
+    /**
+     * Applies all events recorded up to (and including) the given frame,
+     * which haven't been applied yet. Seeking backwards rewinds the recording
+     * and replays it from frame 0, so every frame can be reproduced exactly.
+     * 
+     * @param f
+     *            frame number, relative to the start of the recording
+     * @return number of events applied
+     */
+    public int seek(int f) {
+        if (f < frame) {
+            rewind();
+        }
+        int start = cursor;
+        int i = cursor;
+        while (i < numEvents && frames[i] <= f) {
+            table.applyAndUpdate(indices[i], values[i]);
+            i++;
+        }
+        cursor = i;
+        frame = f;
+        return i - start;
+    }
+
+    /**
+     * Advances playback by one frame.
+     * 
+     * @return true, if there are more events to play back
+     */
+    public boolean update() {
+        seek(frame + 1);
+        return cursor < numEvents;
+    }
+}
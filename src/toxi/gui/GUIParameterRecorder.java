@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records all parameter changes sent by controllers (i.e. all values passed
+ * to {@link GUIParameterTable#set(int, float)}) together with the frame
+ * number they occurred in. Events are written into a preallocated ring buffer
+ * of primitive arrays and streamed to a binary log file by a background
+ * thread, so recording never blocks or allocates on the event path. If the
+ * writer falls behind and the buffer is full, events are dropped and counted
+ * (see {@link #getDroppedCount()}).
+ * 
+ * Frame numbers are taken from {@link GUIManager#getFrameCount()} and are
+ * relative to the start of the recording, so {@link GUIManager#pre()} needs
+ * to be called each frame. The current values of all parameters are
+ * recorded as frame 0 events, so a recording can be replayed from any state
+ * using a {@link GUIParameterPlayer}. Parameters bound after recording has
+ * started are only covered from their first event onwards.
+ * 
+ * Log format (big endian): magic, version, followed by a sequence of tagged
+ * records. An ID record (tag 1: index, short length, UTF-8 controller ID) is
+ * written before the first event of each parameter (and again, if its index
+ * is reused by another parameter), event records (tag 0) contain frame,
+ * parameter index and value.
+ */
+public class GUIParameterRecorder {
+
+    public static final int MAGIC = 0x43503552;
+    public static final int VERSION = 1;
+
+    static final int TAG_EVENT = 0;
+    static final int TAG_ID = 1;
+
+    static final int EVENT_SIZE = 13;
+
+    private final GUIManager gui;
+    private final GUIParameterTable table;
+
+    private final int capacity;
+    private final int mask;
+    private final int[] frames;
+    private final int[] indices;
+    private final String[] ids;
+    private final float[] values;
+
+    // sequence number of the event last stored in each slot
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long drained;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean isRecording;
+    private int startFrame;
+
+    private Thread writer;
+    private FileChannel out;
+    private final ByteBuffer outBuffer = ByteBuffer.allocateDirect(1 << 16);
+    // ID last declared for each index
+    private String[] declaredIDs = new String[64];
+    private long numWritten;
+    private IOException error;
+
+    /**
+     * @param gui
+     * @param capacity
+     *            minimum number of events which can be buffered, rounded up
+     *            to the next power of 2
+     */
+    public GUIParameterRecorder(GUIManager gui, int capacity) {
+        this.gui = gui;
+        this.table = gui.getParameters();
+        int cap = 1;
+        while (cap < capacity) {
+            cap <<= 1;
+        }
+        this.capacity = cap;
+        this.mask = cap - 1;
+        frames = new int[cap];
+        indices = new int[cap];
+        ids = new String[cap];
+        values = new float[cap];
+        published = new AtomicLongArray(cap);
+        for (int i = 0; i < cap; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    private void declareID(int index, String id) throws IOException {
+        byte[] b = id.getBytes("UTF-8");
+        reserve(7 + b.length);
+        outBuffer.put((byte) TAG_ID);
+        outBuffer.putInt(index);
+        outBuffer.putShort((short) b.length);
+        outBuffer.put(b);
+        declaredIDs[index] = id;
+    }
+
+    /**
+     * Writes all events published so far to the log.
+     * 
+     * @return number of events written
+     * @throws IOException
+     */
+    private int drain() throws IOException {
+        long seq = drained;
+        int count = 0;
+        while (true) {
+            int slot = (int) seq & mask;
+            if (published.get(slot) != seq) {
+                break;
+            }
+            int index = indices[slot];
+            String id = ids[slot];
+            ids[slot] = null;
+            if (id == null) {
+                id = table.getID(index);
+            }
+            if (index >= declaredIDs.length) {
+                declaredIDs =
+                        GUIParameterTable.grow(declaredIDs, Math.max(
+                                index + 1, declaredIDs.length * 2));
+            }
+            // declare again if the index has been reused by another parameter
+            if (!id.equals(declaredIDs[index])) {
+                declareID(index, id);
+            }
+            reserve(EVENT_SIZE);
+            outBuffer.put((byte) TAG_EVENT);
+            outBuffer.putInt(frames[slot]);
+            outBuffer.putInt(index);
+            outBuffer.putFloat(values[slot]);
+            drained = ++seq;
+            count++;
+        }
+        flush();
+        numWritten += count;
+        return count;
+    }
+
+    private void flush() throws IOException {
+        outBuffer.flip();
+        while (outBuffer.hasRemaining()) {
+            out.write(outBuffer);
+        }
+        outBuffer.clear();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of events which couldn't be recorded because the buffer
+     *         was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of events recorded so far
+     */
+    public long getEventCount() {
+        return claimed.get();
+    }
+
+    public boolean isRecording() {
+        return isRecording;
+    }
+
+    /**
+     * Adds an event to the ring buffer. Called for every controller event,
+     * possibly from multiple threads. The controller ID is captured with the
+     * event, since the index might be reused before the event is written.
+     * 
+     * @param index
+     *            parameter index
+     * @param id
+     *            controller ID or null to look it up when written
+     * @param value
+     */
+    void record(int index, String id, float value) {
+        if (!isRecording) {
+            return;
+        }
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - drained >= capacity) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+        int slot = (int) seq & mask;
+        frames[slot] = gui.getFrameCount() - startFrame;
+        indices[slot] = index;
+        ids[slot] = id;
+        values[slot] = value;
+        published.set(slot, seq);
+    }
+
+    private void reserve(int numBytes) throws IOException {
+        if (outBuffer.remaining() < numBytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Starts recording into the given file. Any previous recording is stopped
+     * first.
+     * 
+     * @param file
+     *            log file, will be overwritten
+     * @throws IOException
+     */
+    public synchronized void start(File file) throws IOException {
+        stop();
+        out = new FileOutputStream(file).getChannel();
+        outBuffer.clear();
+        outBuffer.putInt(MAGIC);
+        outBuffer.putInt(VERSION);
+        Arrays.fill(declaredIDs, null);
+        numWritten = 0;
+        error = null;
+        dropped.set(0);
+        startFrame = gui.getFrameCount();
+        gui.registerPreHook();
+        isRecording = true;
+        for (int i = 0, num = table.size(); i < num; i++) {
+            if (!table.isBound(i)) {
+                continue;
+            }
+            try {
+                record(i, table.getID(i), table.getLatest(i));
+            } catch (GUIBindingException e) {
+                gui.handleBindingError(table.getID(i), e);
+            }
+        }
+        table.recorder = this;
+        writer = new Thread(new Runnable() {
+
+            public void run() {
+                writeLoop();
+            }
+        }, "cp5magic-recorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops recording, writes all remaining events and closes the log file.
+     * 
+     * @throws IOException
+     *             if writing to the log failed
+     */
+    public synchronized void stop() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        if (table.recorder == this) {
+            table.recorder = null;
+        }
+        isRecording = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        try {
+            if (error == null) {
+                drain();
+            }
+            out.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+        out = null;
+        if (error != null) {
+            throw error;
+        }
+        GUIManager.logger.info("recorded " + numWritten + " events, dropped: "
+                + dropped.get());
+    }
+
+    private void writeLoop() {
+        try {
+            while (isRecording) {
+                if (drain() == 0) {
+                    LockSupport.parkNanos(1000000);
+                }
+            }
+        } catch (IOException e) {
+            error = e;
+            isRecording = false;
+            GUIManager.logger.warning("recording failed: " + e.getMessage());
+        }
+    }
+}
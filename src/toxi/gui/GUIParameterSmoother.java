@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+/**
+ * Filter stage between controllers and the fields of smoothed parameters
+ * (see {@link Smooth} and {@link GUIParameter#setSmoothing(Smooth.Type,
+ * float)}). Values applied to a smoothed parameter only become the filter's
+ * target and {@link #update(float)} (called by {@link GUIManager#pre()}) moves
+ * the field towards it each frame.
+ * 
+ * Filter states are kept in contiguous primitive arrays, one pool per filter
+ * type. Within each pool active filters are kept at the front, so an update
+ * is a single branch-free loop over the active filters only. Filters are
+ * deactivated once converged, so idle parameters cost nothing. If a field is
+ * changed by code while its filter is active, the filter stops and the new
+ * value is kept.
+ */
+public class GUIParameterSmoother {
+
+    private static final class Pool {
+
+        final Smooth.Type type;
+        int size;
+        int numActive;
+        int[] params = new int[INITIAL_CAPACITY];
+        float[] current = new float[INITIAL_CAPACITY];
+        float[] target = new float[INITIAL_CAPACITY];
+        float[] velocity = new float[INITIAL_CAPACITY];
+        float[] coeff = new float[INITIAL_CAPACITY];
+        float[] epsilon = new float[INITIAL_CAPACITY];
+
+        Pool(Smooth.Type type) {
+            this.type = type;
+        }
+
+        int add(int i) {
+            if (size == params.length) {
+                int cap = size * 2;
+                params = GUIParameterTable.grow(params, cap);
+                current = GUIParameterTable.grow(current, cap);
+                target = GUIParameterTable.grow(target, cap);
+                velocity = GUIParameterTable.grow(velocity, cap);
+                coeff = GUIParameterTable.grow(coeff, cap);
+                epsilon = GUIParameterTable.grow(epsilon, cap);
+            }
+            params[size] = i;
+            return size++;
+        }
+
+        void swap(int a, int b, int[] positions) {
+            int p = params[a];
+            params[a] = params[b];
+            params[b] = p;
+            positions[params[a]] = a;
+            positions[params[b]] = b;
+            float t = current[a];
+            current[a] = current[b];
+            current[b] = t;
+            t = target[a];
+            target[a] = target[b];
+            target[b] = t;
+            t = velocity[a];
+            velocity[a] = velocity[b];
+            velocity[b] = t;
+            t = coeff[a];
+            coeff[a] = coeff[b];
+            coeff[b] = t;
+            t = epsilon[a];
+            epsilon[a] = epsilon[b];
+            epsilon[b] = t;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Convergence threshold, relative to the parameter's value range.
+     */
+    public static final float EPSILON = 1e-4f;
+
+    private final GUIParameterTable table;
+    private final Pool[] pools;
+
+    // pool (type ordinal + 1, 0 = not smoothed) and position per parameter
+    private int[] poolIDs = new int[INITIAL_CAPACITY];
+    private int[] positions = new int[INITIAL_CAPACITY];
+
+    GUIParameterSmoother(GUIParameterTable table) {
+        this.table = table;
+        Smooth.Type[] types = Smooth.Type.values();
+        pools = new Pool[types.length];
+        for (int i = 0; i < types.length; i++) {
+            pools[i] = new Pool(types[i]);
+        }
+    }
+
+    private void activate(Pool pool, int pos) {
+        if (pos >= pool.numActive) {
+            pool.swap(pos, pool.numActive, positions);
+            pool.numActive++;
+        }
+    }
+
+    /**
+     * Adds (or replaces) the filter of a parameter. The filter starts at the
+     * parameter's current value.
+     * 
+     * @param i
+     *            parameter index
+     * @param type
+     * @param value
+     *            filter time or rate, see {@link Smooth.Type}
+     */
+    void add(int i, Smooth.Type type, float value) {
+        remove(i);
+        if (i >= poolIDs.length) {
+            int cap = Math.max(i + 1, poolIDs.length * 2);
+            poolIDs = GUIParameterTable.grow(poolIDs, cap);
+            positions = GUIParameterTable.grow(positions, cap);
+        }
+        Pool pool = pools[type.ordinal()];
+        int pos = pool.add(i);
+        float v = table.shadow[i];
+        pool.current[pos] = v;
+        pool.target[pos] = v;
+        pool.velocity[pos] = 0;
+        // store rates instead of times, so updates don't need divisions
+        switch (type) {
+            case SLEW:
+                pool.coeff[pos] = value > 0 ? value : Float.POSITIVE_INFINITY;
+                break;
+            case SPRING:
+                pool.coeff[pos] = 2 / Math.max(value, 1e-4f);
+                break;
+            default:
+                pool.coeff[pos] = 1 / Math.max(value, 1e-4f);
+        }
+        pool.epsilon[pos] =
+                Math.max((table.max[i] - table.min[i]) * EPSILON, 1e-6f);
+        poolIDs[i] = type.ordinal() + 1;
+        positions[i] = pos;
+    }
+
+    /**
+     * @return number of filters currently moving their parameters
+     */
+    public int getNumActive() {
+        int num = 0;
+        for (Pool p : pools) {
+            num += p.numActive;
+        }
+        return num;
+    }
+
+    /**
+     * @param i
+     *            parameter index
+     * @return filter type or null, if the parameter isn't smoothed
+     */
+    public Smooth.Type getType(int i) {
+        return isSmoothed(i) ? pools[poolIDs[i] - 1].type : null;
+    }
+
+    /**
+     * @param i
+     *            parameter index
+     * @return target value, if the parameter's filter is still moving, else
+     *         NaN
+     */
+    float getActiveTarget(int i) {
+        if (isSmoothed(i)) {
+            Pool pool = pools[poolIDs[i] - 1];
+            int pos = positions[i];
+            if (pos < pool.numActive) {
+                return pool.target[pos];
+            }
+        }
+        return Float.NaN;
+    }
+
+    /**
+     * @param i
+     *            parameter index
+     * @return true, if the parameter is smoothed
+     */
+    public boolean isSmoothed(int i) {
+        return i < poolIDs.length && poolIDs[i] != 0;
+    }
+
+    /**
+     * Removes the filter of a parameter (if any) without changing its value.
+     * 
+     * @param i
+     *            parameter index
+     */
+    void remove(int i) {
+        if (!isSmoothed(i)) {
+            return;
+        }
+        Pool pool = pools[poolIDs[i] - 1];
+        int pos = positions[i];
+        if (pos < pool.numActive) {
+            pool.swap(pos, --pool.numActive, positions);
+            pos = pool.numActive;
+        }
+        pool.swap(pos, --pool.size, positions);
+        poolIDs[i] = 0;
+    }
+
+    /**
+     * Stops the filter of a parameter at the given value, e.g. after its
+     * target has been replaced.
+     * 
+     * @param i
+     *            parameter index
+     * @param value
+     */
+    void reset(int i, float value) {
+        if (isSmoothed(i)) {
+            Pool pool = pools[poolIDs[i] - 1];
+            int pos = positions[i];
+            pool.current[pos] = value;
+            pool.target[pos] = value;
+            pool.velocity[pos] = 0;
+        }
+    }
+
+    /**
+     * Sets a new target for the filter of a smoothed parameter.
+     * 
+     * @param i
+     *            parameter index
+     * @param value
+     *            new target value (already clipped)
+     */
+    void setTarget(int i, float value) {
+        Pool pool = pools[poolIDs[i] - 1];
+        int pos = positions[i];
+        pool.target[pos] = value;
+        activate(pool, pos);
+    }
+
+    /**
+     * Advances all active filters by the given time and writes the new values
+     * to their fields. Must be called from the animation thread.
+     * 
+     * @param dt
+     *            time step in seconds
+     * @return number of parameters updated
+     */
+    public int update(float dt) {
+        int count = 0;
+        for (Pool pool : pools) {
+            int num = pool.numActive;
+            if (num == 0) {
+                continue;
+            }
+            float[] current = pool.current;
+            float[] target = pool.target;
+            float[] velocity = pool.velocity;
+            float[] coeff = pool.coeff;
+            float[] epsilon = pool.epsilon;
+            switch (pool.type) {
+                case EXPONENTIAL:
+                    for (int j = 0; j < num; j++) {
+                        float x = coeff[j] * dt;
+                        float c = current[j];
+                        c += (target[j] - c) * (x / (1 + x));
+                        float d = target[j] - c;
+                        current[j] = d <= epsilon[j] && d >= -epsilon[j]
+                                ? target[j] : c;
+                    }
+                    break;
+                case SPRING:
+                    // critically damped spring (see Game Programming Gems 4,
+                    // ch. 1.10)
+                    for (int j = 0; j < num; j++) {
+                        float omega = coeff[j];
+                        float x = omega * dt;
+                        float e = 1 / (1 + x + 0.48f * x * x
+                                + 0.235f * x * x * x);
+                        float change = current[j] - target[j];
+                        float temp = (velocity[j] + omega * change) * dt;
+                        float v = (velocity[j] - omega * temp) * e;
+                        float c = target[j] + (change + temp) * e;
+                        float d = target[j] - c;
+                        boolean isDone = d <= epsilon[j] && d >= -epsilon[j]
+                                && v * dt <= epsilon[j]
+                                && v * dt >= -epsilon[j];
+                        current[j] = isDone ? target[j] : c;
+                        velocity[j] = isDone ? 0 : v;
+                    }
+                    break;
+                default:
+                    for (int j = 0; j < num; j++) {
+                        float step = coeff[j] * dt;
+                        float d = target[j] - current[j];
+                        current[j] = d > step ? current[j] + step
+                                : (d < -step ? current[j] - step : target[j]);
+                    }
+            }
+            for (int j = 0; j < num; j++) {
+                int i = pool.params[j];
+                if (!table.writeSmoothed(i, current[j])) {
+                    // changed by code, stop at the new value
+                    current[j] = target[j] = table.get(i);
+                    velocity[j] = 0;
+                }
+                count++;
+            }
+            for (int j = num - 1; j >= 0; j--) {
+                if (current[j] == target[j] && velocity[j] == 0) {
+                    pool.swap(j, --pool.numActive, positions);
+                }
+            }
+        }
+        return count;
+    }
+}
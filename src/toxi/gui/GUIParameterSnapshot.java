@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable copy of all parameter values of a {@link GUIManager} taken at a
+ * frame boundary. Snapshots are published via
+ * {@link GUIManager#snapshot()} and can be read from any thread without
+ * locking: all values belong to the same frame and never change after
+ * publication.
+ */
+public final class GUIParameterSnapshot {
+
+    static final GUIParameterSnapshot EMPTY =
+            new GUIParameterSnapshot(0, new float[0], Collections
+                    .<String, Integer> emptyMap());
+
+    private final long version;
+    private final float[] values;
+    private final Map<String, Integer> index;
+
+    GUIParameterSnapshot(long version, float[] values,
+            Map<String, Integer> index) {
+        this.version = version;
+        this.values = values;
+        this.index = index;
+    }
+
+    /**
+     * @param i
+     *            parameter index
+     * @return value
+     */
+    public float get(int i) {
+        return values[i];
+    }
+
+    /**
+     * @param id
+     *            controller ID
+     * @param defaultValue
+     *            value returned if no such parameter exists
+     * @return value
+     */
+    public float get(String id, float defaultValue) {
+        Integer i = index.get(id);
+        return i != null && i < values.length ? values[i] : defaultValue;
+    }
+
+    public boolean getBoolean(int i) {
+        return values[i] > 0;
+    }
+
+    public int getInt(int i) {
+        return (int) values[i];
+    }
+
+    /**
+     * @return monotonically increasing version number, incremented with each
+     *         published snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param id
+     *            controller ID
+     * @return parameter index or -1, if not part of this snapshot
+     */
+    public int indexOf(String id) {
+        Integer i = index.get(id);
+        return i != null && i < values.length ? i : -1;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Copies all values into the given array.
+     * 
+     * @param dest
+     *            target array, needs at least {@link #size()} elements
+     * @return dest
+     */
+    public float[] toArray(float[] dest) {
+        System.arraycopy(values, 0, dest, 0, values.length);
+        return dest;
+    }
+}
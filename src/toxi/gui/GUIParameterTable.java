@@ -0,0 +1,895 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Column-oriented storage of all {@link GUIParameter}s bound by a
+ * {@link GUIManager}. Each parameter occupies one index across a number of
+ * parallel arrays, so per-frame passes over all parameters are simple loops
+ * over primitive arrays.
+ * 
+ * The table also implements the staging buffer used in frame synchronized
+ * mode: {@link #set(int, float)} only records the latest value per parameter
+ * and {@link #applyStaged()} writes all recorded values to their targets in
+ * one batch. Staging may happen on any thread, applying should happen on the
+ * animation thread.
+ * 
+ * Targets can be held weakly (see
+ * {@link GUIManager#setWeakContextsEnabled(boolean)}). Parameters whose target
+ * has been collected return their last known value and ignore writes until
+ * they're removed. The indices of removed parameters are reused by parameters
+ * added later.
+ */
+public class GUIParameterTable {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    static float[] grow(float[] a, int size) {
+        float[] b = new float[size];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    static int[] grow(int[] a, int size) {
+        int[] b = new int[size];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    static boolean[] grow(boolean[] a, int size) {
+        boolean[] b = new boolean[size];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T[] grow(T[] a, int size) {
+        T[] b = (T[]) Array.newInstance(a.getClass().getComponentType(), size);
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    protected final GUIManager gui;
+
+    protected int size;
+
+    protected String[] ids = new String[INITIAL_CAPACITY];
+    protected GUIWidget[] controllers = new GUIWidget[INITIAL_CAPACITY];
+    protected Object[] targets = new Object[INITIAL_CAPACITY];
+    protected WeakReference<?>[] weakTargets =
+            new WeakReference<?>[INITIAL_CAPACITY];
+    protected FieldAccessor[] accessors = new FieldAccessor[INITIAL_CAPACITY];
+    protected GUIParameter[] params = new GUIParameter[INITIAL_CAPACITY];
+    protected int[] types = new int[INITIAL_CAPACITY];
+    protected float[] min = new float[INITIAL_CAPACITY];
+    protected float[] max = new float[INITIAL_CAPACITY];
+
+    // integer parameters selecting one of several items, see setChoice()
+    protected boolean[] isChoice = new boolean[INITIAL_CAPACITY];
+
+    // last value known to be displayed by each controller
+    protected float[] shadow = new float[INITIAL_CAPACITY];
+
+    // incremented each time an index is (re)used, see getGeneration()
+    private int[] generations = new int[INITIAL_CAPACITY];
+
+    protected volatile boolean isStaging;
+
+    // front buffer, written by set()
+    private float[] stagedValues = new float[INITIAL_CAPACITY];
+    private boolean[] isStaged = new boolean[INITIAL_CAPACITY];
+    private int[] stagedIndices = new int[INITIAL_CAPACITY];
+    private int numStaged;
+
+    // back buffer, drained by applyStaged()
+    private float[] pendingValues = new float[INITIAL_CAPACITY];
+    private int[] pendingIndices = new int[INITIAL_CAPACITY];
+
+    private final Object stageLock = new Object();
+
+    private volatile Map<String, Integer> indexMap;
+
+    // indices of removed parameters
+    private int[] freeIndices = new int[INITIAL_CAPACITY];
+    private int numFree;
+
+    // parameter indices of bound arrays (arrays hash by identity), might
+    // contain indices removed or reused since
+    private final Map<Object, int[]> arrayIndices =
+            new WeakHashMap<Object, int[]>();
+
+    volatile GUIParameterRecorder recorder;
+
+    volatile GUIParameterHistory history;
+
+    volatile GUIMetrics metrics;
+
+    // created by the first call to setSmoothing()
+    private GUIParameterSmoother smoother;
+
+    public GUIParameterTable(GUIManager gui) {
+        this.gui = gui;
+    }
+
+    /**
+     * Adds a new parameter to the table, reusing the index of a removed
+     * parameter, if possible.
+     * 
+     * @param id
+     *            controller ID
+     * @param target
+     *            object owning the value
+     * @param accessor
+     *            accessor for the value in the target
+     * @param type
+     *            {@link GUIParameter#FLOAT}, {@link GUIParameter#INT} or
+     *            {@link GUIParameter#BOOLEAN}
+     * @param minValue
+     * @param maxValue
+     * @return new parameter
+     */
+    public GUIParameter add(String id, Object target, FieldAccessor accessor,
+            int type, float minValue, float maxValue) {
+        synchronized (stageLock) {
+            boolean isNew = numFree == 0;
+            if (isNew && size == ids.length) {
+                ensureCapacity(size * 2);
+            }
+            int i = isNew ? size : freeIndices[--numFree];
+            ids[i] = id;
+            targets[i] = target;
+            accessors[i] = accessor;
+            types[i] = type;
+            min[i] = minValue;
+            max[i] = maxValue;
+            isChoice[i] = false;
+            params[i] = new GUIParameter(this, i);
+            generations[i]++;
+            try {
+                shadow[i] = get(i);
+            } catch (GUIBindingException e) {
+                gui.handleBindingError(id, e);
+            }
+            if (isNew) {
+                size++;
+            }
+            indexMap = null;
+            return params[i];
+        }
+    }
+
+    /**
+     * Records the indices of the parameters bound to the elements of an
+     * array, so {@link #syncControllers(Object)} only needs to visit those.
+     * Should be called from the animation thread.
+     * 
+     * @param array
+     * @param indices
+     *            parameter indices of the array elements
+     */
+    void addArrayIndices(Object array, int[] indices) {
+        int[] prev = arrayIndices.get(array);
+        if (prev != null) {
+            // array bound more than once, keep its live parameters
+            int[] merged = new int[prev.length + indices.length];
+            int num = 0;
+            for (int i : prev) {
+                if (getTarget(i) == array) {
+                    merged[num++] = i;
+                }
+            }
+            System.arraycopy(indices, 0, merged, num, indices.length);
+            num += indices.length;
+            indices = new int[num];
+            System.arraycopy(merged, 0, indices, 0, num);
+        }
+        arrayIndices.put(array, indices);
+    }
+
+    /**
+     * Writes the given value to the target of the parameter, bypassing the
+     * staging buffer. Errors are passed on to
+     * {@link GUIManager#handleBindingError(String, GUIBindingException)}.
+     * 
+     * @param i
+     *            parameter index
+     * @param value
+     */
+    public void apply(int i, float value) {
+        Object t = getTarget(i);
+        if (t == null) {
+            return;
+        }
+        value = clip(i, value);
+        if (smoother != null && smoother.isSmoothed(i)) {
+            smoother.setTarget(i, value);
+            return;
+        }
+        try {
+            // the shadow holds the value actually written, as read by get()
+            switch (types[i]) {
+                case GUIParameter.INT:
+                    accessors[i].setInt(t, (int) value);
+                    shadow[i] = (int) value;
+                    break;
+                case GUIParameter.BOOLEAN:
+                    accessors[i].setBoolean(t, value > 0);
+                    shadow[i] = value > 0 ? 1 : 0;
+                    break;
+                default:
+                    accessors[i].setFloat(t, value);
+                    shadow[i] = value;
+            }
+        } catch (GUIBindingException e) {
+            gui.handleBindingError(ids[i], e);
+        }
+    }
+
+    /**
+     * Writes the given value to the target of the parameter (like
+     * {@link #apply(int, float)}) and also updates its controller without
+     * triggering any events. Used to restore values from outside the GUI,
+     * e.g. presets.
+     * 
+     * @param i
+     *            parameter index
+     * @param value
+     */
+    public void applyAndUpdate(int i, float value) {
+        apply(i, value);
+        GUIWidget c = controllers[i];
+        if (c != null) {
+            // smoothed controllers show the target, not the current value
+            updateController(c, smoother != null && smoother.isSmoothed(i)
+                    ? clip(i, value) : shadow[i]);
+        }
+    }
+
+    /**
+     * Applies all values staged since the last call in one batch.
+     * 
+     * @return number of parameters updated
+     */
+    public int applyStaged() {
+        int num;
+        synchronized (stageLock) {
+            num = numStaged;
+            if (pendingIndices.length < num) {
+                pendingIndices = new int[stagedIndices.length];
+                pendingValues = new float[stagedIndices.length];
+            }
+            for (int j = 0; j < num; j++) {
+                int i = stagedIndices[j];
+                pendingIndices[j] = i;
+                pendingValues[j] = stagedValues[i];
+                isStaged[i] = false;
+            }
+            numStaged = 0;
+        }
+        for (int j = 0; j < num; j++) {
+            apply(pendingIndices[j], pendingValues[j]);
+        }
+        return num;
+    }
+
+    private float clip(int i, float value) {
+        if (value < min[i]) {
+            return min[i];
+        } else if (value > max[i]) {
+            return max[i];
+        }
+        return value;
+    }
+
+    private void ensureCapacity(int capacity) {
+        ids = grow(ids, capacity);
+        controllers = grow(controllers, capacity);
+        targets = grow(targets, capacity);
+        weakTargets = grow(weakTargets, capacity);
+        accessors = grow(accessors, capacity);
+        params = grow(params, capacity);
+        types = grow(types, capacity);
+        min = grow(min, capacity);
+        max = grow(max, capacity);
+        isChoice = grow(isChoice, capacity);
+        shadow = grow(shadow, capacity);
+        generations = grow(generations, capacity);
+        stagedValues = grow(stagedValues, capacity);
+        isStaged = grow(isStaged, capacity);
+        stagedIndices = grow(stagedIndices, capacity);
+    }
+
+    /**
+     * Reads the current value of the parameter from its target. If the
+     * parameter isn't bound anymore, its last known value is returned.
+     * 
+     * @param i
+     *            parameter index
+     * @return value
+     */
+    public float get(int i) {
+        Object t = getTarget(i);
+        if (t == null) {
+            return shadow[i];
+        }
+        switch (types[i]) {
+            case GUIParameter.INT:
+                return accessors[i].getInt(t);
+            case GUIParameter.BOOLEAN:
+                return accessors[i].getBoolean(t) ? 1 : 0;
+            default:
+                return accessors[i].getFloat(t);
+        }
+    }
+
+    /**
+     * Returns a counter which changes each time the index is reused by a new
+     * parameter, so values addressed to a parameter which has been removed
+     * since can be told apart from values for its successor. From other
+     * threads, the result only matches an index map if
+     * {@link #getIndexMap()} returns the same map before and after the call.
+     * 
+     * @param i
+     *            parameter index
+     * @return generation of the index
+     */
+    int getGeneration(int i) {
+        return generations[i];
+    }
+
+    /**
+     * Returns the controller ID of the parameter at the given index. Unlike
+     * {@link GUIParameter#getID()} this is safe to call from any thread.
+     * 
+     * @param i
+     *            parameter index
+     * @return controller ID
+     */
+    public String getID(int i) {
+        synchronized (stageLock) {
+            return ids[i];
+        }
+    }
+
+    /**
+     * Returns an immutable map of controller IDs to parameter indices
+     * (excluding removed parameters). The map is rebuilt lazily when
+     * parameters have been added or removed and can be shared with other
+     * threads.
+     * 
+     * @return index map
+     */
+    public Map<String, Integer> getIndexMap() {
+        Map<String, Integer> map = indexMap;
+        if (map == null) {
+            synchronized (stageLock) {
+                HashMap<String, Integer> m = new HashMap<String, Integer>();
+                for (int i = 0; i < size; i++) {
+                    if (accessors[i] != null) {
+                        m.put(ids[i], i);
+                    }
+                }
+                map = Collections.unmodifiableMap(m);
+                indexMap = map;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Returns the value the parameter is heading to: the target of its
+     * smoothing filter while that's still moving, else the value returned by
+     * {@link #getLatest(int)}.
+     * 
+     * @param i
+     *            parameter index
+     * @return intended value
+     */
+    float getIntended(int i) {
+        if (smoother != null) {
+            float t = smoother.getActiveTarget(i);
+            if (t == t) {
+                return t;
+            }
+        }
+        return getLatest(i);
+    }
+
+    /**
+     * Returns the most recent value of the parameter: the value staged for it
+     * (if any) or else its current value in the target.
+     * 
+     * @param i
+     *            parameter index
+     * @return latest value
+     */
+    public float getLatest(int i) {
+        if (isStaging) {
+            synchronized (stageLock) {
+                if (isStaged[i]) {
+                    return stagedValues[i];
+                }
+            }
+        }
+        return get(i);
+    }
+
+    /**
+     * @param i
+     *            parameter index
+     * @return parameter or null, if removed
+     */
+    public GUIParameter getParameter(int i) {
+        return params[i];
+    }
+
+    /**
+     * @return number of staged values not yet applied
+     */
+    public int getStagedCount() {
+        synchronized (stageLock) {
+            return numStaged;
+        }
+    }
+
+    /**
+     * @return smoother or null, if no parameter has been smoothed yet
+     */
+    public GUIParameterSmoother getSmoother() {
+        return smoother;
+    }
+
+    /**
+     * @param i
+     *            parameter index
+     * @return target object or null, if removed or collected
+     */
+    public Object getTarget(int i) {
+        Object t = targets[i];
+        if (t == null) {
+            WeakReference<?> ref = weakTargets[i];
+            if (ref != null) {
+                t = ref.get();
+            }
+        }
+        return t;
+    }
+
+    /**
+     * @param i
+     *            parameter index
+     * @return true, if the parameter still has a target
+     */
+    public boolean isBound(int i) {
+        return getTarget(i) != null;
+    }
+
+    /**
+     * @param i
+     *            parameter index
+     * @return true, if the parameter selects one of several items
+     * @see #setChoice(int, boolean)
+     */
+    public boolean isChoice(int i) {
+        return isChoice[i];
+    }
+
+    public boolean isStaging() {
+        return isStaging;
+    }
+
+    /**
+     * Reads the current values of all parameters into the given array.
+     * Values which can't be read are left unchanged.
+     * 
+     * @param dest
+     *            target array, needs at least {@link #size()} elements
+     * @return dest
+     */
+    public float[] read(float[] dest) {
+        for (int i = 0, num = size; i < num; i++) {
+            try {
+                dest[i] = get(i);
+            } catch (GUIBindingException e) {
+                gui.handleBindingError(ids[i], e);
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * Replaces the targets of the given parameters with the objects they're
+     * mapped to and refreshes their controllers with the values of the new
+     * targets (without triggering events). Values staged for the old targets
+     * are discarded. Parameters not in the list are never touched, even if
+     * bound to one of the replaced objects.
+     * 
+     * @param replacements
+     *            identity map of old to new targets
+     * @param indices
+     *            indices of the parameters to rebind
+     * @return number of parameters rebound
+     */
+    public int rebind(Map<Object, Object> replacements, List<Integer> indices) {
+        int count = 0;
+        synchronized (stageLock) {
+            for (int k = 0, num = indices.size(); k < num; k++) {
+                int i = indices.get(k);
+                Object t = getTarget(i);
+                t = t != null ? replacements.get(t) : null;
+                if (t != null) {
+                    if (weakTargets[i] != null) {
+                        weakTargets[i] = new WeakReference<Object>(t);
+                    } else {
+                        targets[i] = t;
+                    }
+                    unstage(i);
+                    try {
+                        shadow[i] = get(i);
+                    } catch (GUIBindingException e) {
+                        gui.handleBindingError(ids[i], e);
+                    }
+                    if (smoother != null) {
+                        smoother.reset(i, shadow[i]);
+                    }
+                    GUIWidget c = controllers[i];
+                    if (c != null) {
+                        updateController(c, shadow[i]);
+                    }
+                    count++;
+                }
+            }
+            if (!arrayIndices.isEmpty()) {
+                List<Object> arrays = new ArrayList<Object>();
+                List<int[]> moved = new ArrayList<int[]>();
+                for (Object a : replacements.keySet()) {
+                    int[] idx = arrayIndices.remove(a);
+                    if (idx != null) {
+                        arrays.add(replacements.get(a));
+                        moved.add(idx);
+                    }
+                }
+                for (int k = 0; k < arrays.size(); k++) {
+                    arrayIndices.put(arrays.get(k), moved.get(k));
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Unbinds the parameter: drops all references to its target, accessor,
+     * controller and {@link GUIParameter} and discards any staged value. The
+     * index will be reused by the next parameter added.
+     * 
+     * @param i
+     *            parameter index
+     */
+    public void remove(int i) {
+        synchronized (stageLock) {
+            if (accessors[i] == null) {
+                return;
+            }
+            if (numFree == freeIndices.length) {
+                freeIndices = grow(freeIndices, numFree * 2);
+            }
+            freeIndices[numFree++] = i;
+            unstage(i);
+            if (smoother != null) {
+                smoother.remove(i);
+            }
+            targets[i] = null;
+            weakTargets[i] = null;
+            accessors[i] = null;
+            controllers[i] = null;
+            params[i] = null;
+            indexMap = null;
+        }
+        GUIParameterHistory h = history;
+        if (h != null) {
+            h.forget(i);
+        }
+    }
+
+    /**
+     * Updates the value of the parameter: if staging is enabled the value
+     * replaces any earlier value staged for the same parameter since the last
+     * {@link #applyStaged()}, else it's applied immediately.
+     * Values are also passed to the active {@link GUIParameterRecorder} and
+     * {@link GUIParameterHistory}, if any, and the time taken is recorded in
+     * the {@link GUIMetrics}, if enabled.
+     * 
+     * @param i
+     *            parameter index
+     * @param value
+     */
+    public void set(int i, float value) {
+        GUIParameterRecorder r = recorder;
+        if (r != null) {
+            r.record(i, ids[i], value);
+        }
+        // needs to see the value before this change
+        GUIParameterHistory h = history;
+        if (h != null) {
+            h.record(i, value);
+        }
+        GUIMetrics m = metrics;
+        long t = m != null ? System.nanoTime() : 0;
+        if (isStaging) {
+            synchronized (stageLock) {
+                stagedValues[i] = value;
+                if (!isStaged[i]) {
+                    isStaged[i] = true;
+                    stagedIndices[numStaged++] = i;
+                }
+            }
+        } else {
+            apply(i, value);
+        }
+        if (m != null) {
+            m.recordWrite(i, System.nanoTime() - t);
+        }
+    }
+
+    /**
+     * Marks an integer parameter as selecting one of several items (e.g. the
+     * index of a radio selection). Choices aren't smoothed and switch at the
+     * threshold of a {@link GUIParameterMorph} instead of being
+     * interpolated.
+     * 
+     * @param i
+     *            parameter index
+     * @param state
+     */
+    public void setChoice(int i, boolean state) {
+        isChoice[i] = state;
+        if (state && smoother != null) {
+            smoother.remove(i);
+        }
+    }
+
+    void setController(int i, GUIWidget ctrl) {
+        controllers[i] = ctrl;
+    }
+
+    /**
+     * Puts a filter between the controller and the target of a numeric
+     * parameter, so that applied values are approached smoothly by
+     * {@link GUIParameterSmoother#update(float)} instead of being written
+     * immediately. Boolean and choice parameters can't be smoothed. Should
+     * be called from the animation thread.
+     * 
+     * @param i
+     *            parameter index
+     * @param type
+     *            filter type or null to remove the filter
+     * @param value
+     *            filter time or rate, see {@link Smooth.Type}
+     */
+    public void setSmoothing(int i, Smooth.Type type, float value) {
+        if (type == null) {
+            if (smoother != null) {
+                smoother.remove(i);
+            }
+        } else if (types[i] != GUIParameter.BOOLEAN && !isChoice[i]) {
+            if (smoother == null) {
+                smoother = new GUIParameterSmoother(this);
+                gui.registerPreHook();
+            }
+            smoother.add(i, type, value);
+        }
+    }
+
+    /**
+     * Enables/disables staging of writes. Disabling applies all values staged
+     * so far.
+     * 
+     * @param state
+     */
+    public void setStaging(boolean state) {
+        isStaging = state;
+        if (!state) {
+            applyStaged();
+        }
+    }
+
+    /**
+     * Switches the parameter to hold its target via a {@link WeakReference}.
+     * 
+     * @param i
+     *            parameter index
+     */
+    void setWeak(int i) {
+        Object t = targets[i];
+        if (t != null) {
+            weakTargets[i] = new WeakReference<Object>(t);
+            targets[i] = null;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // returns true, if the controller has been updated
+    private boolean sync(int i) {
+        float v;
+        try {
+            v = get(i);
+        } catch (GUIBindingException e) {
+            gui.handleBindingError(ids[i], e);
+            return false;
+        }
+        if (v != shadow[i]) {
+            shadow[i] = v;
+            GUIWidget c = controllers[i];
+            if (c != null) {
+                updateController(c, v);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Model-to-view synchronization pass: compares the current value of each
+     * parameter with the value last shown by its controller and updates only
+     * controllers whose values have been changed by code. Controllers are
+     * updated with broadcasting disabled, so no events are sent back.
+     * 
+     * @return number of controllers updated
+     */
+    public int syncControllers() {
+        int count = 0;
+        for (int i = 0, num = size; i < num; i++) {
+            if (sync(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Like {@link #syncControllers()}, but only for parameters bound to the
+     * given target object, e.g. all elements of an array after a bulk update.
+     * For arrays bound via {@link ArrayBuilder} only the array's own
+     * parameters are visited, for other targets all parameters.
+     * 
+     * @param target
+     * @return number of controllers updated
+     */
+    public int syncControllers(Object target) {
+        int count = 0;
+        int[] indices = arrayIndices.get(target);
+        if (indices != null) {
+            for (int i : indices) {
+                if (getTarget(i) == target && sync(i)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        for (int i = 0, num = size; i < num; i++) {
+            if (getTarget(i) == target && sync(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // needs to hold stageLock
+    private void unstage(int i) {
+        if (isStaged[i]) {
+            isStaged[i] = false;
+            for (int j = 0; j < numStaged; j++) {
+                if (stagedIndices[j] == i) {
+                    stagedIndices[j] = stagedIndices[--numStaged];
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the controller's value without triggering its listeners.
+     * 
+     * @param c
+     * @param value
+     */
+    protected void updateController(GUIWidget c, float value) {
+        c.setValue(value);
+    }
+
+    /**
+     * Appends a description of all bound parameters to the given buffer, one
+     * tab-separated line per parameter: controller ID, type (float, int or
+     * boolean), min, max and last known value. Safe to call from any thread.
+     * 
+     * @param out
+     * @return number of parameters described
+     */
+    public int writeSchema(StringBuilder out) {
+        int count = 0;
+        synchronized (stageLock) {
+            for (int i = 0; i < size; i++) {
+                if (accessors[i] == null) {
+                    continue;
+                }
+                String type;
+                switch (types[i]) {
+                    case GUIParameter.INT:
+                        type = "int";
+                        break;
+                    case GUIParameter.BOOLEAN:
+                        type = "boolean";
+                        break;
+                    default:
+                        type = "float";
+                }
+                out.append(ids[i]).append('\t').append(type).append('\t')
+                        .append(min[i]).append('\t').append(max[i]).append(
+                                '\t').append(shadow[i]).append('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes an intermediate value of a smoothed parameter, unless its target
+     * has been changed by code since the last write.
+     * 
+     * @param i
+     *            parameter index
+     * @param value
+     * @return false, if the value in the target has been changed by code
+     */
+    boolean writeSmoothed(int i, float value) {
+        Object t = getTarget(i);
+        if (t == null) {
+            return true;
+        }
+        try {
+            if (get(i) != shadow[i]) {
+                return false;
+            }
+            if (types[i] == GUIParameter.INT) {
+                accessors[i].setInt(t, (int) value);
+                shadow[i] = (int) value;
+            } else {
+                accessors[i].setFloat(t, value);
+                shadow[i] = value;
+            }
+        } catch (GUIBindingException e) {
+            gui.handleBindingError(ids[i], e);
+        }
+        return true;
+    }
+}
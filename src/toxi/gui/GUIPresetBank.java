@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bank of parameter presets stored in a compact, memory-mapped binary file.
+ * Presets are keyed by controller ID, so presets remain usable if parameters
+ * are added to or removed from a context: values of unknown IDs are ignored
+ * on recall and parameters missing from a preset keep their current values.
+ * 
+ * File layout (big endian):
+ * 
+ * <pre>
+ * int    magic ('CP5P')
+ * int    format version
+ * int    number of preset slots
+ * int    number of keys
+ * int    offset of first slot
+ * keys   (unsigned short length + UTF-8 bytes) * number of keys
+ * slots  (int used flag + float value * number of keys) * number of slots
+ * </pre>
+ * 
+ * Slots have a fixed size, so recalling a preset only reads a slice at a
+ * fixed offset without any parsing or allocation. Values not set in a preset
+ * are stored as NaN. When the file needs to be rewritten (e.g. when new keys
+ * are added), the new version is written to a temporary file next to it
+ * first, which then replaces the original, so a failed write never leaves a
+ * truncated bank behind. Preset banks are not thread safe and should only
+ * be used from the animation thread.
+ */
+public class GUIPresetBank {
+
+    public static final int MAGIC = 0x43503550;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 20;
+
+    // column of parameters not stored in the file yet
+    private static final int MISSING = -1;
+
+    // column of removed parameters, ignored by all operations
+    private static final int REMOVED = -2;
+
+    private static byte[] utf8(String s) throws IOException {
+        try {
+            byte[] b = s.getBytes("UTF-8");
+            if (b.length > 0xffff) {
+                throw new IOException("controller ID too long: " + s);
+            }
+            return b;
+        } catch (UnsupportedEncodingException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private final GUIManager gui;
+    private final File path;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    private int capacity;
+    private List<String> keys = new ArrayList<String>();
+    private Map<String, Integer> keyIndex = new HashMap<String, Integer>();
+    private int dataOffset;
+    private int slotSize;
+
+    // column of each parameter index in the file, MISSING or REMOVED
+    private int[] columns = new int[0];
+    private Map<String, Integer> mappedIndex;
+    private float[] values = new float[0];
+
+    /**
+     * Opens the given preset file or creates a new one with the given number
+     * of slots, if the file doesn't exist yet.
+     * 
+     * @param gui
+     *            GUI manager providing the parameters
+     * @param path
+     *            preset file
+     * @param capacity
+     *            number of slots for new files
+     * @throws IOException
+     *             if the file can't be accessed or isn't a valid preset file
+     */
+    public GUIPresetBank(GUIManager gui, File path, int capacity)
+            throws IOException {
+        this.gui = gui;
+        this.path = path;
+        if (path.exists() && path.length() > 0) {
+            open();
+            try {
+                readHeader();
+            } catch (IOException e) {
+                channel.close();
+                file.close();
+                throw e;
+            }
+        } else {
+            this.capacity = capacity;
+            writeFile(new float[0][], new boolean[capacity]);
+        }
+    }
+
+    private void addKey(String id) {
+        keyIndex.put(id, keys.size());
+        keys.add(id);
+    }
+
+    /**
+     * Closes the underlying file.
+     * 
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+        file.close();
+    }
+
+    private void extendKeys(GUIParameterTable params) throws IOException {
+        int numOld = keys.size();
+        float[][] data = new float[capacity][numOld];
+        boolean[] used = new boolean[capacity];
+        for (int s = 0; s < capacity; s++) {
+            int offset = slotOffset(s);
+            used[s] = buffer.getInt(offset) != 0;
+            for (int k = 0; k < numOld; k++) {
+                data[s][k] = buffer.getFloat(offset + 4 + (k << 2));
+            }
+        }
+        for (int i = 0, num = params.size(); i < num; i++) {
+            GUIParameter p = params.getParameter(i);
+            if (p != null && !keyIndex.containsKey(p.getID())) {
+                addKey(p.getID());
+            }
+        }
+        writeFile(data, used);
+        mappedIndex = null;
+        updateColumns();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return controller IDs stored in this bank
+     */
+    public List<String> getKeys() {
+        return new ArrayList<String>(keys);
+    }
+
+    /**
+     * @param slot
+     * @return true, if the slot contains a stored preset
+     */
+    public boolean isUsed(int slot) {
+        return buffer.getInt(slotOffset(slot)) != 0;
+    }
+
+    /**
+     * Reads the preset in the given slot into a parameter state array indexed
+     * like the manager's {@link GUIParameterTable}, e.g. for use with a
+     * {@link GUIParameterMorph}. Parameters not stored in the preset are set
+     * to NaN.
+     * 
+     * @param slot
+     * @param dest
+     *            target array or null to allocate a new one
+     * @return state or null, if the slot is empty
+     */
+    public float[] load(int slot, float[] dest) {
+        int offset = slotOffset(slot);
+        if (buffer.getInt(offset) == 0) {
+            return null;
+        }
+        updateColumns();
+        int num = columns.length;
+        if (dest == null || dest.length < num) {
+            dest = new float[num];
+        }
+        offset += 4;
+        for (int i = 0; i < num; i++) {
+            int col = columns[i];
+            dest[i] = col >= 0 ? buffer.getFloat(offset + (col << 2))
+                    : Float.NaN;
+        }
+        return dest;
+    }
+
+    private void open() throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+    }
+
+    private void readHeader() throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            throw new IOException("not a preset file (too short)");
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("preset file too large");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a preset file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("unsupported preset file version: "
+                    + buffer.getInt(4));
+        }
+        capacity = buffer.getInt(8);
+        int numKeys = buffer.getInt(12);
+        dataOffset = buffer.getInt(16);
+        if (capacity < 0 || numKeys < 0 || dataOffset < HEADER_SIZE) {
+            throw new IOException("corrupt preset file header");
+        }
+        long dataSize = (long) capacity * (4 + numKeys * 4L);
+        if (dataOffset + dataSize > size) {
+            throw new IOException("corrupt preset file: " + capacity
+                    + " slots of " + numKeys + " keys exceed file size");
+        }
+        buffer.position(HEADER_SIZE);
+        for (int i = 0; i < numKeys; i++) {
+            if (dataOffset - buffer.position() < 2) {
+                throw new IOException("corrupt preset file keys");
+            }
+            int length = buffer.getShort() & 0xffff;
+            if (dataOffset - buffer.position() < length) {
+                throw new IOException("corrupt preset file keys");
+            }
+            byte[] b = new byte[length];
+            buffer.get(b);
+            addKey(new String(b, "UTF-8"));
+        }
+        slotSize = 4 + numKeys * 4;
+    }
+
+    /**
+     * Restores the preset in the given slot: all parameters stored in the
+     * preset are written to their fields and controllers in one pass.
+     * 
+     * @param slot
+     * @return true, if the slot contained a preset
+     */
+    public boolean recall(int slot) {
+        int offset = slotOffset(slot);
+        if (buffer.getInt(offset) == 0) {
+            return false;
+        }
+        updateColumns();
+        GUIParameterTable params = gui.getParameters();
+        offset += 4;
+        for (int i = 0, num = columns.length; i < num; i++) {
+            int col = columns[i];
+            if (col >= 0) {
+                float v = buffer.getFloat(offset + (col << 2));
+                if (v == v) {
+                    params.applyAndUpdate(i, v);
+                }
+            }
+        }
+        return true;
+    }
+
+    private int slotOffset(int slot) {
+        if (slot < 0 || slot >= capacity) {
+            throw new IndexOutOfBoundsException("invalid preset slot: " + slot);
+        }
+        return dataOffset + slot * slotSize;
+    }
+
+    /**
+     * Stores the current values of all parameters in the given slot. If
+     * parameters have been added since the bank was created, the file is
+     * rewritten with the new keys first.
+     * 
+     * @param slot
+     * @throws IOException
+     */
+    public void store(int slot) throws IOException {
+        slotOffset(slot);
+        updateColumns();
+        GUIParameterTable params = gui.getParameters();
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] == MISSING) {
+                extendKeys(params);
+                break;
+            }
+        }
+        int offset = slotOffset(slot);
+        int num = columns.length;
+        int[] cols = columns;
+        params.read(values);
+        buffer.putInt(offset, 1);
+        offset += 4;
+        for (int i = 0; i < keys.size(); i++) {
+            buffer.putFloat(offset + (i << 2), Float.NaN);
+        }
+        for (int i = 0; i < num; i++) {
+            if (cols[i] >= 0) {
+                buffer.putFloat(offset + (cols[i] << 2), values[i]);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the parameter index to file column mapping, if parameters
+     * have been added or removed since the last call.
+     */
+    private void updateColumns() {
+        GUIParameterTable params = gui.getParameters();
+        Map<String, Integer> index = params.getIndexMap();
+        if (index == mappedIndex && columns.length == params.size()) {
+            return;
+        }
+        int num = params.size();
+        columns = new int[num];
+        values = new float[num];
+        for (int i = 0; i < num; i++) {
+            GUIParameter p = params.getParameter(i);
+            if (p != null) {
+                Integer col = keyIndex.get(p.getID());
+                columns[i] = col != null ? col : MISSING;
+            } else {
+                columns[i] = REMOVED;
+            }
+        }
+        mappedIndex = index;
+    }
+
+    private void writeFile(float[][] data, boolean[] used) throws IOException {
+        List<byte[]> encoded = new ArrayList<byte[]>(keys.size());
+        int keySize = 0;
+        for (String k : keys) {
+            byte[] b = utf8(k);
+            encoded.add(b);
+            keySize += 2 + b.length;
+        }
+        dataOffset = (HEADER_SIZE + keySize + 7) & ~7;
+        slotSize = 4 + keys.size() * 4;
+        long length = (long) dataOffset + (long) capacity * slotSize;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("preset file too large");
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) length);
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, VERSION);
+        buf.putInt(8, capacity);
+        buf.putInt(12, keys.size());
+        buf.putInt(16, dataOffset);
+        buf.position(HEADER_SIZE);
+        for (byte[] b : encoded) {
+            buf.putShort((short) b.length);
+            buf.put(b);
+        }
+        for (int s = 0; s < capacity; s++) {
+            int offset = dataOffset + s * slotSize;
+            buf.putInt(offset, s < used.length && used[s] ? 1 : 0);
+            for (int k = 0; k < keys.size(); k++) {
+                float v =
+                        s < data.length && k < data[s].length ? data[s][k]
+                                : Float.NaN;
+                buf.putFloat(offset + 4 + (k << 2), v);
+            }
+        }
+        buf.clear();
+        File tmp = new File(path.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            out.setLength(0);
+            FileChannel ch = out.getChannel();
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(true);
+        } finally {
+            out.close();
+        }
+        if (channel != null) {
+            buffer = null;
+            channel.close();
+            file.close();
+        }
+        if (!tmp.renameTo(path)) {
+            // some platforms can't rename over an existing file
+            if (!path.delete() || !tmp.renameTo(path)) {
+                throw new IOException("can't replace preset file: " + path
+                        + ", new version left in: " + tmp);
+            }
+        }
+        open();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+    }
+}
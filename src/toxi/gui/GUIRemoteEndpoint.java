@@ -0,0 +1,610 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+
+/**
+ * Optional remote control endpoint, opened via
+ * {@link GUIManager#openRemoteEndpoint(int, int)}. Listens on the loopback
+ * interface only (UDP and/or TCP) for binary frames setting any number of
+ * parameters at once, addressed by their controller IDs.
+ * 
+ * <h3>Frames</h3>
+ * Each UDP datagram holds a single frame. On TCP, each frame is preceded by
+ * its length (4 bytes). All numbers are big endian.
+ * <ul>
+ * <li><code>'S'</code>, number of pairs (2 bytes), then for each pair: length
+ * of the ID (1 byte), ID (UTF-8), value (4 byte float)</li>
+ * <li><code>/dump</code> (ASCII): answered with the parameter schema as text,
+ * see {@link GUIParameterTable#writeSchema(StringBuilder)}. Via UDP, large
+ * schemas are split into several datagrams at line breaks.</li>
+ * </ul>
+ * 
+ * Frames are decoded in place from direct buffers by a single network thread
+ * (IDs are matched against a pre-encoded dictionary, so no strings are
+ * created). Decoded values are coalesced per parameter in lock-free slots,
+ * i.e. only the latest value received per parameter is kept, and applied on
+ * the animation thread by {@link #apply()} (called from
+ * {@link GUIManager#pre()}).
+ */
+public class GUIRemoteEndpoint implements Runnable {
+
+    /**
+     * Coalescing buffer: latest value and dirty flag per parameter index,
+     * plus a single producer/single consumer ring of dirty indices. Each
+     * index is queued at most once while dirty, so the ring never overflows.
+     * Values are packed with the generation of the index they were resolved
+     * against (see {@link GUIParameterTable#getGeneration(int)}), so both are
+     * always read together.
+     */
+    private static final class Slots {
+
+        final int capacity;
+        final AtomicLongArray values;
+        final AtomicIntegerArray isDirty;
+        final int[] ring;
+        final int mask;
+        volatile int head, tail;
+
+        Slots(int capacity) {
+            int size = 1;
+            while (size < capacity) {
+                size <<= 1;
+            }
+            this.capacity = size;
+            values = new AtomicLongArray(size);
+            isDirty = new AtomicIntegerArray(size);
+            ring = new int[size];
+            mask = size - 1;
+        }
+
+        // network thread only
+        void offer(int i, int generation, float value) {
+            values.set(i, (long) generation << 32
+                    | (Float.floatToRawIntBits(value) & 0xffffffffL));
+            if (isDirty.getAndSet(i, 1) == 0) {
+                int t = tail;
+                ring[t & mask] = i;
+                tail = t + 1;
+            }
+        }
+    }
+
+    private static final class Client {
+
+        final ByteBuffer in = ByteBuffer.allocateDirect(4 + MAX_FRAME_SIZE);
+        ByteBuffer out;
+    }
+
+    public static final byte OP_SET = 'S';
+    public static final byte OP_QUERY = '/';
+
+    /**
+     * Max size of a single frame.
+     */
+    public static final int MAX_FRAME_SIZE = 65507;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] DUMP = encode("dump");
+
+    private static byte[] encode(String s) {
+        ByteBuffer buf = UTF8.encode(s);
+        byte[] b = new byte[buf.remaining()];
+        buf.get(b);
+        return b;
+    }
+
+    private static int hash(ByteBuffer buf, int offset, int length) {
+        int h = 0x811c9dc5;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = (h ^ (buf.get(i) & 0xff)) * 0x01000193;
+        }
+        return h;
+    }
+
+    private static int hash(byte[] b) {
+        return hash(ByteBuffer.wrap(b), 0, b.length);
+    }
+
+    private static boolean matches(ByteBuffer buf, int offset, int length,
+            byte[] b) {
+        if (length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf.get(offset + i) != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final GUIParameterTable table;
+
+    private final Selector selector;
+    private final DatagramChannel udp;
+    private final ServerSocketChannel tcp;
+    private final ByteBuffer packet = ByteBuffer.allocateDirect(MAX_FRAME_SIZE);
+    private Thread thread;
+    private volatile boolean isRunning;
+
+    // ID dictionary (open addressing), rebuilt when the index map changes
+    private Map<String, Integer> dictionarySource;
+    private byte[][] dictionaryIDs;
+    private int[] dictionaryIndices;
+    private int[] dictionaryGenerations;
+
+    private volatile Slots slots = new Slots(1024);
+    private final ConcurrentLinkedQueue<Slots> retiredSlots =
+            new ConcurrentLinkedQueue<Slots>();
+
+    private volatile long numFrames, numValues, numUnknown, numApplied;
+
+    /**
+     * Binds the endpoint to the loopback interface. Use
+     * {@link GUIManager#openRemoteEndpoint(int, int)} instead of calling this
+     * directly.
+     * 
+     * @param gui
+     * @param udpPort
+     *            UDP port, 0 for any free port or -1 to disable UDP
+     * @param tcpPort
+     *            TCP port, 0 for any free port or -1 to disable TCP
+     * @throws IOException
+     */
+    public GUIRemoteEndpoint(GUIManager gui, int udpPort, int tcpPort)
+            throws IOException {
+        this.table = gui.getParameters();
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        selector = Selector.open();
+        DatagramChannel u = null;
+        ServerSocketChannel t = null;
+        try {
+            if (udpPort >= 0) {
+                u = DatagramChannel.open();
+                u.socket().bind(new InetSocketAddress(loopback, udpPort));
+                u.configureBlocking(false);
+                u.register(selector, SelectionKey.OP_READ);
+            }
+            if (tcpPort >= 0) {
+                t = ServerSocketChannel.open();
+                t.socket().bind(new InetSocketAddress(loopback, tcpPort));
+                t.configureBlocking(false);
+                t.register(selector, SelectionKey.OP_ACCEPT);
+            }
+        } catch (IOException e) {
+            if (u != null) {
+                u.close();
+            }
+            if (t != null) {
+                t.close();
+            }
+            selector.close();
+            throw e;
+        }
+        udp = u;
+        tcp = t;
+    }
+
+    private void accept() throws IOException {
+        SocketChannel c = tcp.accept();
+        if (c != null) {
+            c.configureBlocking(false);
+            c.register(selector, SelectionKey.OP_READ, new Client());
+        }
+    }
+
+    /**
+     * Applies all values received since the last call (only the latest value
+     * per parameter) and updates their controllers without triggering any
+     * events. Must be called from the animation thread.
+     * 
+     * @return number of parameters updated
+     */
+    public int apply() {
+        int count = 0;
+        // read first, so values of retired slots are never applied later
+        Slots current = slots;
+        Slots s;
+        while ((s = retiredSlots.peek()) != null) {
+            count += drain(s);
+            retiredSlots.poll();
+        }
+        count += drain(current);
+        numApplied += count;
+        return count;
+    }
+
+    private void buildDictionary(Map<String, Integer> map) {
+        int size = 16;
+        while (size < map.size() * 2) {
+            size <<= 1;
+        }
+        byte[][] ids = new byte[size][];
+        int[] indices = new int[size];
+        int[] generations = new int[size];
+        int mask = size - 1;
+        for (Map.Entry<String, Integer> e : map.entrySet()) {
+            byte[] id = encode(e.getKey());
+            int j = hash(id) & mask;
+            while (ids[j] != null) {
+                j = (j + 1) & mask;
+            }
+            ids[j] = id;
+            indices[j] = e.getValue();
+            generations[j] = table.getGeneration(indices[j]);
+        }
+        dictionaryIDs = ids;
+        dictionaryIndices = indices;
+        dictionaryGenerations = generations;
+    }
+
+    /**
+     * Stops the network thread and closes all channels.
+     */
+    public void close() {
+        isRunning = false;
+        selector.wakeup();
+        Thread t = thread;
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            GUIManager.logger.log(Level.WARNING,
+                    "error closing remote endpoint", e);
+        }
+    }
+
+    private void decode(ByteBuffer buf, int offset, int length,
+            SelectionKey key, SocketAddress sender) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        numFrames++;
+        byte op = buf.get(offset);
+        if (op == OP_SET) {
+            decodeValues(buf, offset + 1, offset + length);
+        } else if (op == OP_QUERY) {
+            if (matches(buf, offset + 1, length - 1, DUMP)) {
+                sendSchema(key, sender);
+            } else {
+                GUIManager.logger.warning("unknown remote query");
+            }
+        } else {
+            GUIManager.logger.warning("unknown remote frame type: " + op);
+        }
+    }
+
+    private void decodeValues(ByteBuffer buf, int p, int end) {
+        if (p + 2 > end) {
+            GUIManager.logger.warning("truncated remote frame");
+            return;
+        }
+        updateDictionary();
+        int num = buf.getShort(p) & 0xffff;
+        p += 2;
+        for (int k = 0; k < num; k++) {
+            if (p + 1 > end) {
+                break;
+            }
+            int len = buf.get(p++) & 0xff;
+            if (p + len + 4 > end) {
+                GUIManager.logger.warning("truncated remote frame");
+                return;
+            }
+            int j = lookup(buf, p, len);
+            float value = buf.getFloat(p + len);
+            p += len + 4;
+            if (j != -1) {
+                offer(dictionaryIndices[j], dictionaryGenerations[j], value);
+                numValues++;
+            } else {
+                numUnknown++;
+            }
+        }
+    }
+
+    // consumer side, see Slots
+    private int drain(Slots s) {
+        int count = 0;
+        int h = s.head;
+        int t = s.tail;
+        while (h != t) {
+            int i = s.ring[h & s.mask];
+            h++;
+            s.head = h;
+            s.isDirty.set(i, 0);
+            long v = s.values.get(i);
+            // skip values for parameters removed since they were received
+            if (i < table.size() && table.getParameter(i) != null
+                    && (int) (v >>> 32) == table.getGeneration(i)) {
+                table.applyAndUpdate(i, Float.intBitsToFloat((int) v));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of values applied (after coalescing)
+     */
+    public long getNumApplied() {
+        return numApplied;
+    }
+
+    /**
+     * @return number of frames received
+     */
+    public long getNumFrames() {
+        return numFrames;
+    }
+
+    /**
+     * @return number of values received for unknown IDs
+     */
+    public long getNumUnknown() {
+        return numUnknown;
+    }
+
+    /**
+     * @return number of values received for known IDs (before coalescing)
+     */
+    public long getNumValues() {
+        return numValues;
+    }
+
+    /**
+     * @return bound TCP port or -1, if disabled
+     */
+    public int getTCPPort() {
+        return tcp != null ? tcp.socket().getLocalPort() : -1;
+    }
+
+    /**
+     * @return bound UDP port or -1, if disabled
+     */
+    public int getUDPPort() {
+        return udp != null ? udp.socket().getLocalPort() : -1;
+    }
+
+    private int lookup(ByteBuffer buf, int offset, int length) {
+        byte[][] ids = dictionaryIDs;
+        int mask = ids.length - 1;
+        for (int j = hash(buf, offset, length) & mask;; j = (j + 1) & mask) {
+            byte[] id = ids[j];
+            if (id == null) {
+                return -1;
+            }
+            if (matches(buf, offset, length, id)) {
+                return j;
+            }
+        }
+    }
+
+    // network thread only
+    private void offer(int i, int generation, float value) {
+        Slots s = slots;
+        if (i >= s.capacity) {
+            Slots grown = new Slots(Math.max(i + 1, s.capacity * 2));
+            retiredSlots.add(s);
+            slots = s = grown;
+        }
+        s.offer(i, generation, value);
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        if (key.channel() == udp) {
+            SocketAddress sender;
+            while (true) {
+                packet.clear();
+                sender = udp.receive(packet);
+                if (sender == null) {
+                    break;
+                }
+                decode(packet, 0, packet.position(), key, sender);
+            }
+            return;
+        }
+        SocketChannel c = (SocketChannel) key.channel();
+        Client client = (Client) key.attachment();
+        ByteBuffer in = client.in;
+        if (c.read(in) == -1) {
+            key.cancel();
+            c.close();
+            return;
+        }
+        int p = 0;
+        int end = in.position();
+        while (end - p >= 4) {
+            int length = in.getInt(p);
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                GUIManager.logger.warning("invalid remote frame size: "
+                        + length);
+                key.cancel();
+                c.close();
+                return;
+            }
+            if (end - p - 4 < length) {
+                break;
+            }
+            decode(in, p + 4, length, key, null);
+            p += 4 + length;
+        }
+        in.limit(end);
+        in.position(p);
+        in.compact();
+    }
+
+    /**
+     * Network loop, run by the endpoint's own thread (see {@link #start()}).
+     */
+    public void run() {
+        while (isRunning) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys =
+                        selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        if (key.channel() instanceof SocketChannel) {
+                            key.cancel();
+                            key.channel().close();
+                        } else {
+                            throw e;
+                        }
+                    }
+                }
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                if (isRunning) {
+                    GUIManager.logger.log(Level.WARNING,
+                            "remote endpoint error", e);
+                }
+            } catch (RuntimeException e) {
+                GUIManager.logger.log(Level.WARNING,
+                        "remote endpoint error", e);
+            }
+        }
+    }
+
+    private void sendSchema(SelectionKey key, SocketAddress sender)
+            throws IOException {
+        StringBuilder sb = new StringBuilder();
+        table.writeSchema(sb);
+        ByteBuffer schema = UTF8.encode(sb.toString());
+        if (sender != null) {
+            // split into datagrams at line breaks
+            int start = 0, end = schema.limit();
+            while (start < end) {
+                int last = Math.min(start + MAX_FRAME_SIZE, end);
+                if (last < end) {
+                    int nl = last - 1;
+                    while (nl > start && schema.get(nl) != '\n') {
+                        nl--;
+                    }
+                    if (nl > start) {
+                        last = nl + 1;
+                    }
+                }
+                ByteBuffer chunk = schema.duplicate();
+                chunk.limit(last);
+                chunk.position(start);
+                udp.send(chunk, sender);
+                start = last;
+            }
+            return;
+        }
+        Client client = (Client) key.attachment();
+        ByteBuffer out =
+                ByteBuffer.allocate((client.out != null ? client.out
+                        .remaining() : 0)
+                        + 4 + schema.remaining());
+        if (client.out != null) {
+            out.put(client.out);
+        }
+        out.putInt(schema.remaining());
+        out.put(schema);
+        out.flip();
+        client.out = out;
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Starts the network thread (as daemon).
+     */
+    public synchronized void start() {
+        if (thread == null) {
+            isRunning = true;
+            thread = new Thread(this, "GUIRemoteEndpoint");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void updateDictionary() {
+        Map<String, Integer> map = table.getIndexMap();
+        while (map != dictionarySource) {
+            buildDictionary(map);
+            // retry if parameters were added/removed while reading their
+            // generations
+            Map<String, Integer> current = table.getIndexMap();
+            if (current == map) {
+                dictionarySource = map;
+            }
+            map = current;
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Client client = (Client) key.attachment();
+        if (client.out != null) {
+            ((SocketChannel) key.channel()).write(client.out);
+            if (client.out.hasRemaining()) {
+                return;
+            }
+            client.out = null;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+}
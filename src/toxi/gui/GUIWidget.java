@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+/**
+ * Backend independent handle for a single widget created by a
+ * {@link GUIBackend}. Widget values are always floats, toggles use 0/1 and
+ * radio groups the index of the selected item.
+ */
+public interface GUIWidget {
+
+    public void addListener(GUIWidgetListener listener);
+
+    /**
+     * Sets a new value and notifies all listeners, just like user input
+     * would.
+     * 
+     * @param value
+     */
+    public void changeValue(float value);
+
+    /**
+     * @return widget/controller ID
+     */
+    public String getID();
+
+    public float getValue();
+
+    /**
+     * @return current x position
+     */
+    public float getX();
+
+    /**
+     * @return current y position
+     */
+    public float getY();
+
+    public boolean isVisible();
+
+    /**
+     * Removes the widget from its backend.
+     */
+    public void remove();
+
+    public void setLabel(String label);
+
+    public void setPosition(float x, float y);
+
+    public void setTab(String tab);
+
+    /**
+     * Updates the displayed value without notifying any listeners.
+     * 
+     * @param value
+     */
+    public void setValue(float value);
+
+    public void setValueLabel(String label);
+
+    public void setVisible(boolean state);
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+/**
+ * Base class for generated {@link FieldAccessor}s. All operations throw a
+ * {@link GUIBindingException} unless overridden for the field's type.
+ */
+public abstract class GeneratedFieldAccessor implements FieldAccessor {
+
+    protected final String name;
+
+    protected GeneratedFieldAccessor(String name) {
+        this.name = name;
+    }
+
+    public Object get(Object context) {
+        throw unsupported("read", "Object");
+    }
+
+    public boolean getBoolean(Object context) {
+        throw unsupported("read", "boolean");
+    }
+
+    public float getFloat(Object context) {
+        throw unsupported("read", "float");
+    }
+
+    public int getInt(Object context) {
+        throw unsupported("read", "int");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void set(Object context, Object value) {
+        throw unsupported("write", "Object");
+    }
+
+    public void setBoolean(Object context, boolean value) {
+        throw unsupported("write", "boolean");
+    }
+
+    public void setFloat(Object context, float value) {
+        throw unsupported("write", "float");
+    }
+
+    public void setInt(Object context, int value) {
+        throw unsupported("write", "int");
+    }
+
+    @Override
+    public String toString() {
+        return "GeneratedFieldAccessor: " + name;
+    }
+
+    protected GUIBindingException unsupported(String op, String type) {
+        return new GUIBindingException("can't " + op + " field: " + name
+                + " as " + type);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+/**
+ * In-memory {@link GUIBackend} which needs neither a display nor a PApplet.
+ * Widgets only store their state, user input can be simulated via
+ * {@link GUIWidget#changeValue(float)}. Useful for render farm workers,
+ * tests and for benchmarking the binding layer without any drawing overhead.
+ * Since there's no animation loop, {@link GUIManager#pre()} has to be called
+ * manually.
+ */
+public class HeadlessBackend implements GUIBackend {
+
+    protected final LinkedHashMap<String, HeadlessWidget> widgets =
+            new LinkedHashMap<String, HeadlessWidget>();
+
+    protected String activeTab = "default";
+
+    public GUIWidget createButton(String id, float value, int x, int y,
+            int width, int height) {
+        return register(new HeadlessWidget(this, id, value, -Float.MAX_VALUE,
+                Float.MAX_VALUE, x, y, width, height));
+    }
+
+    public GUIWidget createRadio(String id, String[] items, int x, int y) {
+        HeadlessWidget w =
+                new HeadlessWidget(this, id, -1, -1, items.length - 1, x, y,
+                        100, items.length * 16);
+        w.items = items.clone();
+        return register(w);
+    }
+
+    public GUIWidget createSlider(String id, float min, float max, float value,
+            int x, int y, int width, int height) {
+        return register(new HeadlessWidget(this, id, value, min, max, x, y,
+                width, height));
+    }
+
+    public GUIWidget createToggle(String id, boolean state, int x, int y,
+            int width, int height) {
+        return register(new HeadlessWidget(this, id, state ? 1 : 0, 0, 1, x, y,
+                width, height));
+    }
+
+    public String getActiveTab() {
+        return activeTab;
+    }
+
+    /**
+     * @param id
+     * @return widget with the given ID or null
+     */
+    public HeadlessWidget getWidget(String id) {
+        return widgets.get(id);
+    }
+
+    /**
+     * @return all widgets in creation order
+     */
+    public Collection<HeadlessWidget> getWidgets() {
+        return Collections.unmodifiableCollection(new ArrayList<HeadlessWidget>(
+                widgets.values()));
+    }
+
+    private GUIWidget register(HeadlessWidget w) {
+        widgets.put(w.getID(), w);
+        return w;
+    }
+
+    public boolean registerPreHook(GUIManager gui) {
+        return false;
+    }
+
+    /**
+     * Simulates switching tabs.
+     * 
+     * @param tab
+     */
+    public void setActiveTab(String tab) {
+        activeTab = tab;
+    }
+
+    void remove(HeadlessWidget w) {
+        if (widgets.get(w.getID()) == w) {
+            widgets.remove(w.getID());
+        }
+    }
+}
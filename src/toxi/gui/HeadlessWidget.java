@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Widget state of the {@link HeadlessBackend}.
+ */
+public class HeadlessWidget implements GUIWidget {
+
+    private final HeadlessBackend backend;
+    private final String id;
+
+    protected float value;
+    protected final float min, max;
+    protected float x, y;
+    protected final int width, height;
+    protected String label;
+    protected String valueLabel;
+    protected String tab = "default";
+    protected String[] items;
+    protected boolean isVisible = true;
+
+    private final List<GUIWidgetListener> listeners =
+            new ArrayList<GUIWidgetListener>(1);
+
+    HeadlessWidget(HeadlessBackend backend, String id, float value, float min,
+            float max, float x, float y, int width, int height) {
+        this.backend = backend;
+        this.id = id;
+        this.value = value;
+        this.min = min;
+        this.max = max;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.label = id;
+    }
+
+    public void addListener(GUIWidgetListener listener) {
+        listeners.add(listener);
+    }
+
+    public void changeValue(float value) {
+        setValue(value);
+        for (int i = 0, num = listeners.size(); i < num; i++) {
+            listeners.get(i).widgetChanged(this, this.value);
+        }
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    /**
+     * @return radio item labels or null, if the widget isn't a radio group
+     */
+    public String[] getItems() {
+        return items;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public String getTab() {
+        return tab;
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    public String getValueLabel() {
+        return valueLabel;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public boolean isVisible() {
+        return isVisible;
+    }
+
+    public void remove() {
+        backend.remove(this);
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public void setPosition(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public void setTab(String tab) {
+        this.tab = tab;
+    }
+
+    public void setValue(float value) {
+        this.value = value < min ? min : value > max ? max : value;
+    }
+
+    public void setValueLabel(String label) {
+        this.valueLabel = label;
+    }
+
+    public void setVisible(boolean state) {
+        isVisible = state;
+    }
+
+    @Override
+    public String toString() {
+        return id + ": " + value;
+    }
+}
@@ -27,17 +27,18 @@ import java.util.List;
 import toxi.geom.Vec2D;
 import toxi.math.MathUtils;
 import toxi.util.datatypes.IntegerRange;
-import controlP5.ControlEvent;
-import controlP5.ControlListener;
-import controlP5.Controller;
-import controlP5.Slider;
 
 public class IntRangeBuilder implements GUIElementBuilder {
 
-    protected static Slider createSlider(GUIManager gui, String id, int min,
-            int max, int curr, Vec2D pos, String label, ControlListener listener) {
-        Slider s =
-                gui.getGUI().addSlider(id, min, max, curr, (int) pos.x,
+    // writes go through setCurrent(), clipping to the live range limits
+    private static final FieldAccessor CURRENT_VALUE =
+            new RangeValueAccessor();
+
+    protected static GUIWidget createSlider(GUIManager gui, String id,
+            int min, int max, int curr, Vec2D pos, String label,
+            GUIWidgetListener listener) {
+        GUIWidget s =
+                gui.getBackend().createSlider(id, min, max, curr, (int) pos.x,
                         (int) pos.y, 100, 14);
         s.setLabel(label);
         s.addListener(listener);
@@ -46,14 +47,15 @@ public class IntRangeBuilder implements GUIElementBuilder {
 
     public IntegerRange defaultRange = new IntegerRange(0, 100);
 
-    public List<Controller> createElementsFor(final Object context,
+    public List<GUIWidget> createElementsFor(final Object context,
             final Field field, Vec2D pos, String id, String label,
             GUIManager gui) throws IllegalArgumentException,
             IllegalAccessException {
-        List<Controller> controllers = new ArrayList<Controller>(1);
+        List<GUIWidget> controllers = new ArrayList<GUIWidget>(1);
+        FieldAccessor accessor = gui.getAccessorFor(field);
         IntegerRange r = null;
         boolean singleValue = false;
-        final Class<? extends Object> type = field.get(context).getClass();
+        final Class<? extends Object> type = accessor.get(context).getClass();
         if (type == Integer.class) {
             Range ra = field.getAnnotation(Range.class);
             if (ra != null) {
@@ -63,31 +65,31 @@ public class IntRangeBuilder implements GUIElementBuilder {
                         + ", using default...");
                 r = defaultRange.copy();
             }
-            r.setCurrent(MathUtils.clip(field.getInt(context), r.min, r.max));
+            r.setCurrent(MathUtils.clip(accessor.getInt(context), r.min, r.max));
             singleValue = true;
         } else {
-            r = (IntegerRange) field.get(context);
+            r = (IntegerRange) accessor.get(context);
         }
-        final IntegerRange range = r;
-        final boolean isRange = !singleValue;
-        if (range != null) {
-            range.setCurrent(field.getInt(context));
-            Slider s =
-                    createSlider(gui, id, range.min, range.max,
-                            range.currValue, pos, label, new ControlListener() {
+        if (r != null) {
+            final GUIParameter param;
+            if (singleValue) {
+                param =
+                        gui.bindParameter(id, context, accessor,
+                                GUIParameter.INT, r.min, r.max);
+            } else {
+                param =
+                        gui.bindParameter(id, r, CURRENT_VALUE,
+                                GUIParameter.INT, r.min, r.max);
+            }
+            GUIWidget s =
+                    createSlider(gui, id, r.min, r.max, r.currValue, pos,
+                            label, new GUIWidgetListener() {
 
-                                public void controlEvent(ControlEvent e) {
-                                    try {
-                                        int val = (int) e.value();
-                                        if (isRange) {
-                                            range.setCurrent(val);
-                                        } else {
-                                            field.setInt(context, val);
-                                        }
-                                        e.controller().setValueLabel("" + val);
-                                    } catch (IllegalArgumentException e1) {
-                                    } catch (IllegalAccessException e1) {
-                                    }
+                                public void widgetChanged(GUIWidget w,
+                                        float value) {
+                                    int val = (int) value;
+                                    param.set(val);
+                                    w.setValueLabel("" + val);
                                 }
                             });
             controllers.add(s);
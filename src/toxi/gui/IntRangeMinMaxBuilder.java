@@ -26,47 +26,55 @@ import java.util.List;
 
 import toxi.geom.Vec2D;
 import toxi.util.datatypes.IntegerRange;
-import controlP5.ControlEvent;
-import controlP5.ControlListener;
-import controlP5.Controller;
-import controlP5.Slider;
 
 public class IntRangeMinMaxBuilder extends IntRangeBuilder implements
         GUIElementBuilder {
 
     @Override
-    public List<Controller> createElementsFor(final Object context,
+    public List<GUIWidget> createElementsFor(final Object context,
             final Field field, Vec2D pos, String id, String label,
             GUIManager gui) throws IllegalArgumentException,
             IllegalAccessException {
-        List<Controller> controllers = new ArrayList<Controller>(2);
-        final IntegerRange range = (IntegerRange) field.get(context);
-        Slider s =
+        List<GUIWidget> controllers = new ArrayList<GUIWidget>(2);
+        final IntegerRange range =
+                (IntegerRange) gui.getAccessorFor(field).get(context);
+        final GUIParameter minParam =
+                gui.bindParameter(id + "_min", range, gui.getAccessorFor(
+                        IntegerRange.class, "min"), GUIParameter.INT,
+                        range.min, range.max);
+        final GUIParameter maxParam =
+                gui.bindParameter(id + "_max", range, gui.getAccessorFor(
+                        IntegerRange.class, "max"), GUIParameter.INT,
+                        range.min, range.max);
+        GUIWidget s =
                 createSlider(gui, id + "_min", range.min, range.max, range.min,
-                        pos, "min " + label, new ControlListener() {
+                        pos, "min " + label, new GUIWidgetListener() {
 
-                            public void controlEvent(ControlEvent e) {
-                                int val = (int) e.value();
-                                if (val <= range.max) {
-                                    range.min = val;
-                                    e.controller().setValueLabel("" + val);
+                            public void widgetChanged(GUIWidget w,
+                                    float value) {
+                                int val = (int) value;
+                                if (val <= maxParam.getLatest()) {
+                                    minParam.set(val);
+                                    w.setValueLabel("" + val);
                                 } else {
-                                    e.controller().changeValue(range.max);
+                                    w.changeValue(maxParam.getLatest());
                                 }
                             }
                         });
         controllers.add(s);
         s =
                 createSlider(gui, id + "_max", range.min, range.max, range.max,
-                        pos.add(200, 0), "max " + label, new ControlListener() {
+                        pos.add(200, 0), "max " + label,
+                        new GUIWidgetListener() {
 
-                            public void controlEvent(ControlEvent e) {
-                                int val = (int) e.value();
-                                if (val >= range.min) {
-                                    range.max = val;
-                                    e.controller().setValueLabel("" + val);
+                            public void widgetChanged(GUIWidget w,
+                                    float value) {
+                                int val = (int) value;
+                                if (val >= minParam.getLatest()) {
+                                    maxParam.set(val);
+                                    w.setValueLabel("" + val);
                                 } else {
-                                    e.controller().changeValue(range.min);
+                                    w.changeValue(minParam.getLatest());
                                 }
                             }
                         });
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+
+import controlP5.ControlEvent;
+import controlP5.ControlListener;
+
+/**
+ * {@link ControlListener} forwarding events to a public method
+ * <code>name(ControlEvent)</code> of a context object. The method is resolved
+ * and made accessible once when the listener is created, so a missing method
+ * is reported immediately and each event only costs a single invocation.
+ */
+public class MethodControlListener implements ControlListener {
+
+    protected final Object context;
+    protected final Method method;
+
+    /**
+     * @param context
+     *            object declaring the callback method
+     * @param name
+     *            method name
+     * @throws IllegalArgumentException
+     *             if the context has no public method of that name accepting
+     *             a single {@link ControlEvent}
+     */
+    public MethodControlListener(Object context, String name) {
+        this.context = context;
+        try {
+            method = context.getClass().getMethod(name, ControlEvent.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("no method: " + name
+                    + "(ControlEvent) in context: "
+                    + context.getClass().getName());
+        }
+        try {
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            GUIManager.logger.warning("can't suppress access checks for: "
+                    + method);
+        }
+    }
+
+    public void controlEvent(ControlEvent e) {
+        try {
+            method.invoke(context, e);
+        } catch (InvocationTargetException ex) {
+            GUIManager.logger.log(Level.WARNING, "error in callback: "
+                    + method.getName(), ex.getCause());
+        } catch (IllegalAccessException ex) {
+            GUIManager.logger.log(Level.WARNING, "can't invoke callback: "
+                    + method.getName(), ex);
+        }
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+}
@@ -23,36 +23,67 @@ package toxi.gui;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 
 import toxi.geom.Vec2D;
-import controlP5.Controller;
-import controlP5.Radio;
 
-public class RadioBuilder implements GUIElementBuilder {
+/**
+ * Builder for {@link Collection} fields, shown as a radio group with one
+ * item per element (labelled via its <code>toString()</code>). The index of
+ * the selected item is bound as an integer {@link GUIParameter} (marked as
+ * choice), which isn't stored in the context itself, so selections are
+ * covered by presets, history and morphs. Read it via
+ * {@link GUIManager#getParameter(String)} or a listener.
+ */
+public class RadioBuilder implements GUIElementBuilder, GUIMeasurable {
 
-    private int itemCount;
+    private static final FieldAccessor SELECTION = new ArrayElementAccessor(0);
 
-    public List<Controller> createElementsFor(Object context, Field field,
+    public List<GUIWidget> createElementsFor(Object context, Field field,
             Vec2D pos, String id, String label, GUIManager gui)
             throws IllegalArgumentException, IllegalAccessException {
-        Radio r = gui.getGUI().addRadio(id, (int) pos.x, (int) pos.y);
-        r.setBroadcast(false);
-        itemCount = 0;
-        for (Iterator<?> i = ((Collection<?>) field.get(context)).iterator(); i
-                .hasNext();) {
-            r.addItem(i.next().toString(), itemCount++);
+        Collection<?> items =
+                (Collection<?>) gui.getAccessorFor(field).get(context);
+        String[] labels = new String[items.size()];
+        int i = 0;
+        for (Object item : items) {
+            labels[i++] = item.toString();
         }
-        r.setBroadcast(true);
+        final int[] selection = new int[1];
+        final GUIParameter param =
+                gui.bindParameter(id, selection, SELECTION, GUIParameter.INT,
+                        0, Math.max(labels.length - 1, 0));
+        param.setChoice(true);
+        GUIWidget r =
+                gui.getBackend().createRadio(id, labels, (int) pos.x,
+                        (int) pos.y);
         r.setLabel(label);
-        List<Controller> controllers = new ArrayList<Controller>(1);
+        r.addListener(new GUIWidgetListener() {
+
+            // also keeps the selection reachable in weak context mode
+            final int[] target = selection;
+
+            public void widgetChanged(GUIWidget w, float value) {
+                param.set(value);
+            }
+        });
+        List<GUIWidget> controllers = new ArrayList<GUIWidget>(1);
         controllers.add(r);
         return controllers;
     }
 
+    /**
+     * @return spacing needed for a single item, use
+     *         {@link #getSpacingFor(Object)} for the actual spacing
+     */
     public Vec2D getMinSpacing() {
-        return new Vec2D(100, (itemCount + 1) * 16);
+        return new Vec2D(100, 2 * 16);
+    }
+
+    public Vec2D getSpacingFor(Object value) {
+        int n = value instanceof Collection<?> ? ((Collection<?>) value).size()
+                : 1;
+        return new Vec2D(100, (n + 1) * 16);
     }
 
 }
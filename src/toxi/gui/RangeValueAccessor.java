@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import toxi.util.datatypes.FloatRange;
+import toxi.util.datatypes.IntegerRange;
+
+/**
+ * {@link FieldAccessor} for the current value of a {@link FloatRange} or
+ * {@link IntegerRange}. The range itself is used as context and values are
+ * written via <code>setCurrent()</code>, so they're always clipped to the
+ * live limits of the range (which can be changed at any time, e.g. by a
+ * {@link FloatRangeMinMaxBuilder}), not the limits it had when bound.
+ */
+public class RangeValueAccessor implements FieldAccessor {
+
+    protected GUIBindingException fail(String op, Object context) {
+        return new GUIBindingException("can't " + op + " current value of: "
+                + (context != null ? context.getClass().getName() : null));
+    }
+
+    public Object get(Object context) {
+        if (context instanceof IntegerRange) {
+            return getInt(context);
+        }
+        return getFloat(context);
+    }
+
+    public boolean getBoolean(Object context) {
+        return getFloat(context) > 0;
+    }
+
+    public float getFloat(Object context) {
+        if (context instanceof FloatRange) {
+            return ((FloatRange) context).currValue;
+        } else if (context instanceof IntegerRange) {
+            return ((IntegerRange) context).currValue;
+        }
+        throw fail("read", context);
+    }
+
+    public int getInt(Object context) {
+        if (context instanceof IntegerRange) {
+            return ((IntegerRange) context).currValue;
+        }
+        return (int) getFloat(context);
+    }
+
+    public String getName() {
+        return "currValue";
+    }
+
+    public void set(Object context, Object value) {
+        if (value instanceof Number) {
+            setFloat(context, ((Number) value).floatValue());
+        } else {
+            throw fail("write", context);
+        }
+    }
+
+    public void setBoolean(Object context, boolean value) {
+        setFloat(context, value ? 1 : 0);
+    }
+
+    public void setFloat(Object context, float value) {
+        if (context instanceof FloatRange) {
+            ((FloatRange) context).setCurrent(value);
+        } else if (context instanceof IntegerRange) {
+            ((IntegerRange) context).setCurrent((int) value);
+        } else {
+            throw fail("write", context);
+        }
+    }
+
+    public void setInt(Object context, int value) {
+        if (context instanceof IntegerRange) {
+            ((IntegerRange) context).setCurrent(value);
+        } else {
+            setFloat(context, value);
+        }
+    }
+}
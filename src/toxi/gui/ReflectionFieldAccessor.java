@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.lang.reflect.Field;
+
+/**
+ * Default {@link FieldAccessor} implementation, wrapping a
+ * {@link java.lang.reflect.Field} with access checks suppressed once at
+ * creation time, so that subsequent reads/writes skip the security checks.
+ */
+public class ReflectionFieldAccessor implements FieldAccessor {
+
+    /**
+     * Factory producing {@link ReflectionFieldAccessor} instances.
+     */
+    public static final FieldAccessorFactory FACTORY =
+            new FieldAccessorFactory() {
+
+                public FieldAccessor createAccessor(Field field) {
+                    return new ReflectionFieldAccessor(field);
+                }
+            };
+
+    protected final Field field;
+
+    public ReflectionFieldAccessor(Field field) {
+        this.field = field;
+        try {
+            field.setAccessible(true);
+        } catch (SecurityException e) {
+            GUIManager.logger.warning("can't suppress access checks for: "
+                    + field);
+        }
+    }
+
+    protected GUIBindingException fail(String op, Object context, Exception e) {
+        return new GUIBindingException("can't " + op + " field: "
+                + field.getName() + " in context: "
+                + (context != null ? context.getClass().getName() : null), e);
+    }
+
+    public Object get(Object context) {
+        try {
+            return field.get(context);
+        } catch (IllegalArgumentException e) {
+            throw fail("read", context, e);
+        } catch (IllegalAccessException e) {
+            throw fail("read", context, e);
+        }
+    }
+
+    public boolean getBoolean(Object context) {
+        try {
+            return field.getBoolean(context);
+        } catch (IllegalArgumentException e) {
+            throw fail("read", context, e);
+        } catch (IllegalAccessException e) {
+            throw fail("read", context, e);
+        }
+    }
+
+    public float getFloat(Object context) {
+        try {
+            return field.getFloat(context);
+        } catch (IllegalArgumentException e) {
+            throw fail("read", context, e);
+        } catch (IllegalAccessException e) {
+            throw fail("read", context, e);
+        }
+    }
+
+    public int getInt(Object context) {
+        try {
+            return field.getInt(context);
+        } catch (IllegalArgumentException e) {
+            throw fail("read", context, e);
+        } catch (IllegalAccessException e) {
+            throw fail("read", context, e);
+        }
+    }
+
+    public String getName() {
+        return field.getName();
+    }
+
+    public void set(Object context, Object value) {
+        try {
+            field.set(context, value);
+        } catch (IllegalArgumentException e) {
+            throw fail("write", context, e);
+        } catch (IllegalAccessException e) {
+            throw fail("write", context, e);
+        }
+    }
+
+    public void setBoolean(Object context, boolean value) {
+        try {
+            field.setBoolean(context, value);
+        } catch (IllegalArgumentException e) {
+            throw fail("write", context, e);
+        } catch (IllegalAccessException e) {
+            throw fail("write", context, e);
+        }
+    }
+
+    public void setFloat(Object context, float value) {
+        try {
+            field.setFloat(context, value);
+        } catch (IllegalArgumentException e) {
+            throw fail("write", context, e);
+        } catch (IllegalAccessException e) {
+            throw fail("write", context, e);
+        }
+    }
+
+    public void setInt(Object context, int value) {
+        try {
+            field.setInt(context, value);
+        } catch (IllegalArgumentException e) {
+            throw fail("write", context, e);
+        } catch (IllegalAccessException e) {
+            throw fail("write", context, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReflectionFieldAccessor: " + field;
+    }
+}
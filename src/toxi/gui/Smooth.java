@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2010 Karsten Schmidt
+ * 
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * 
+ * http://creativecommons.org/licenses/LGPL/2.1/
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package toxi.gui;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Smooths changes of a numeric field made via its controller(s), instead of
+ * applying them instantly. See {@link GUIParameterSmoother}.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Smooth {
+
+    public enum Type {
+        /**
+         * First order low pass, value is the time constant in seconds.
+         */
+        EXPONENTIAL,
+
+        /**
+         * Critically damped spring, value is the approximate time in seconds
+         * to reach the target.
+         */
+        SPRING,
+
+        /**
+         * Linear ramp, value is the max change per second.
+         */
+        SLEW
+    }
+
+    public Type type() default Type.EXPONENTIAL;
+
+    public float value() default 0.1f;
+}